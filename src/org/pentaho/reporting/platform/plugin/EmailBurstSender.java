@@ -0,0 +1,287 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.platform.plugin.messages.Messages;
+
+/**
+ * Sends large numbers of emails, as produced when bursting a report, over a single reused SMTP connection instead of
+ * opening a new connection per message as {@link SimpleEmailComponent#execute()} does. Messages are built on a small
+ * thread pool while previously built messages are sent; the connection itself is used by one thread at a time.
+ * <p/>
+ * A message that cannot be built or sent is counted as failed and does not stop the remaining messages; only a failure
+ * to connect to the mail server aborts the burst. The connection is recycled after a configurable number of messages,
+ * and re-opened once per message if the server drops it.
+ */
+public class EmailBurstSender {
+  private static final Log logger = LogFactory.getLog( EmailBurstSender.class );
+
+  private static final String PREFIX = "org.pentaho.reporting.platform.plugin.EmailBurstSender.";
+  private static final String BUILD_THREADS_KEY = PREFIX + "BuildThreads";
+  private static final String MESSAGES_PER_CONNECTION_KEY = PREFIX + "MessagesPerConnection";
+
+  private final Session session;
+  private final int buildThreads;
+  private final int messagesPerConnection;
+
+  private Transport transport;
+  private int messagesOnConnection;
+  private int sentCount;
+  private int failedCount;
+  private long firstSendTime;
+  private long lastSendTime;
+
+  /**
+   * Creates a sender for the SMTP server configured in <code>smtp-email/email_config.xml</code>. Unlike single emails,
+   * the session only logs the SMTP conversation if <code>mail.debug</code> is set explicitly.
+   */
+  public EmailBurstSender() throws Exception {
+    this( SimpleEmailComponent.buildSession( false ) );
+  }
+
+  public EmailBurstSender( final Session session ) {
+    this( session, ClassicEngineBoot.getInstance().getExtendedConfig().getIntProperty( BUILD_THREADS_KEY, 4 ),
+        ClassicEngineBoot.getInstance().getExtendedConfig().getIntProperty( MESSAGES_PER_CONNECTION_KEY, 500 ) );
+  }
+
+  /**
+   * @param session
+   *          the mail session used for building and sending all messages.
+   * @param buildThreads
+   *          the number of threads building messages in {@link #sendAll(List)}.
+   * @param messagesPerConnection
+   *          the number of messages sent before the connection is re-opened, or zero to keep it open.
+   */
+  public EmailBurstSender( final Session session, final int buildThreads, final int messagesPerConnection ) {
+    if ( session == null ) {
+      throw new NullPointerException();
+    }
+    this.session = session;
+    this.buildThreads = Math.max( 1, buildThreads );
+    this.messagesPerConnection = Math.max( 0, messagesPerConnection );
+  }
+
+  public Session getSession() {
+    return session;
+  }
+
+  /**
+   * Builds and sends the messages of all given components. Components that are not valid or whose message cannot be
+   * built are counted as failed.
+   *
+   * @param emails
+   *          the messages to send.
+   * @return the number of messages sent by this call.
+   * @throws MessagingException
+   *           if the connection to the mail server could not be established.
+   */
+  public int sendAll( final List<SimpleEmailComponent> emails ) throws MessagingException {
+    final int sentBefore = sentCount;
+    final int failedBefore = failedCount;
+    final long startTime = System.currentTimeMillis();
+
+    final ExecutorService pool = Executors.newFixedThreadPool( buildThreads, new ThreadFactory() {
+      public Thread newThread( final Runnable r ) {
+        final Thread thread = new Thread( r, "Email message builder" ); // NON-NLS
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+    try {
+      // keep a bounded number of built messages in flight, so that attachments of all recipients are not held at once
+      final int window = buildThreads * 4;
+      final LinkedList<Future<MimeMessage>> pending = new LinkedList<Future<MimeMessage>>();
+      final Iterator<SimpleEmailComponent> iterator = emails.iterator();
+      while ( iterator.hasNext() || pending.isEmpty() == false ) {
+        while ( iterator.hasNext() && pending.size() < window ) {
+          pending.add( pool.submit( new MessageBuilder( iterator.next() ) ) );
+        }
+
+        final MimeMessage message = awaitMessage( pending.removeFirst() );
+        if ( message != null ) {
+          send( message );
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+      close();
+    }
+
+    final int sent = sentCount - sentBefore;
+    final long duration = System.currentTimeMillis() - startTime;
+    logger.info( Messages.getInstance().getString( "ReportPlugin.logInfoEmailBurstFinished", //$NON-NLS-1$
+        String.valueOf( sent ), String.valueOf( failedCount - failedBefore ), String.valueOf( duration ),
+        String.valueOf( duration > 0 ? sent * 1000L / duration : sent ) ) );
+    return sent;
+  }
+
+  private MimeMessage awaitMessage( final Future<MimeMessage> future ) throws MessagingException {
+    try {
+      final MimeMessage message = future.get();
+      if ( message == null ) {
+        markFailed();
+      }
+      return message;
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new MessagingException( "Interrupted while building messages" ); //$NON-NLS-1$
+    } catch ( ExecutionException e ) {
+      logger.warn( Messages.getInstance().getString( "ReportPlugin.emailBuildFailed" ), e.getCause() ); //$NON-NLS-1$
+      markFailed();
+      return null;
+    }
+  }
+
+  private synchronized void markFailed() {
+    failedCount += 1;
+  }
+
+  /**
+   * Sends a single message over the shared connection.
+   *
+   * @param message
+   *          the message to send.
+   * @return true if the message was accepted by the server, false if it could not be sent.
+   * @throws MessagingException
+   *           if the connection to the mail server could not be established.
+   */
+  public synchronized boolean send( final MimeMessage message ) throws MessagingException {
+    final Address[] recipients;
+    try {
+      message.saveChanges();
+      recipients = message.getAllRecipients();
+    } catch ( MessagingException e ) {
+      return sendFailed( e );
+    }
+
+    final Transport connected = getTransport();
+    try {
+      connected.sendMessage( message, recipients );
+    } catch ( SendFailedException e ) {
+      return sendFailed( e );
+    } catch ( MessagingException e ) {
+      // the server may have dropped an idle or exhausted connection; retry once on a fresh one
+      closeTransport();
+      final Transport reconnected = getTransport();
+      try {
+        reconnected.sendMessage( message, recipients );
+      } catch ( MessagingException retryFailure ) {
+        closeTransport();
+        return sendFailed( retryFailure );
+      }
+    }
+
+    lastSendTime = System.currentTimeMillis();
+    if ( sentCount == 0 ) {
+      firstSendTime = lastSendTime;
+    }
+    sentCount += 1;
+    messagesOnConnection += 1;
+    if ( messagesPerConnection > 0 && messagesOnConnection >= messagesPerConnection ) {
+      closeTransport();
+    }
+    return true;
+  }
+
+  private boolean sendFailed( final MessagingException e ) {
+    logger.warn( Messages.getInstance().getString( "ReportPlugin.emailSendFailed" ), e ); //$NON-NLS-1$
+    failedCount += 1;
+    return false;
+  }
+
+  private Transport getTransport() throws MessagingException {
+    if ( transport == null || transport.isConnected() == false ) {
+      transport = session.getTransport( "smtp" ); //$NON-NLS-1$
+      transport.connect();
+      messagesOnConnection = 0;
+    }
+    return transport;
+  }
+
+  private void closeTransport() {
+    if ( transport == null ) {
+      return;
+    }
+    try {
+      transport.close();
+    } catch ( MessagingException e ) {
+      logger.debug( "Failed to close mail transport", e ); //$NON-NLS-1$
+    }
+    transport = null;
+  }
+
+  /**
+   * Closes the connection to the mail server. The sender can still be used afterwards and will reconnect on demand.
+   */
+  public synchronized void close() {
+    closeTransport();
+  }
+
+  public synchronized int getSentCount() {
+    return sentCount;
+  }
+
+  public synchronized int getFailedCount() {
+    return failedCount;
+  }
+
+  /**
+   * @return the number of messages sent per second between the first and the last successful send.
+   */
+  public synchronized double getMessagesPerSecond() {
+    final long duration = lastSendTime - firstSendTime;
+    if ( duration <= 0 ) {
+      return sentCount;
+    }
+    return sentCount * 1000.0 / duration;
+  }
+
+  private class MessageBuilder implements Callable<MimeMessage> {
+    private final SimpleEmailComponent email;
+
+    private MessageBuilder( final SimpleEmailComponent email ) {
+      this.email = email;
+    }
+
+    public MimeMessage call() throws Exception {
+      if ( email.validate() == false ) {
+        return null;
+      }
+      return email.createMessage( session );
+    }
+  }
+}
@@ -38,9 +38,12 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.util.UUIDUtil;
 import org.pentaho.platform.util.web.MimeHelper;
 import org.pentaho.reporting.engine.classic.core.AttributeNames;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
 import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.modules.output.pageable.pdf.PdfPageableModule;
 import org.pentaho.reporting.engine.classic.core.modules.output.table.html.HtmlTableModule;
 import org.pentaho.reporting.engine.classic.core.util.StagingMode;
+import org.pentaho.reporting.libraries.base.config.ExtendedConfiguration;
 import org.pentaho.reporting.platform.plugin.messages.Messages;
 
 public class ExecuteReportContentHandler {
@@ -48,6 +51,10 @@ public class ExecuteReportContentHandler {
       "org.pentaho.reporting.engine.classic.core.modules.output.table.html.ForceBufferedWriting";
   private static final Log logger = LogFactory.getLog( ExecuteReportContentHandler.class );
   private static final StagingMode DEFAULT = StagingMode.THRU;
+  private static final String STREAM_PDF =
+      "org.pentaho.reporting.platform.plugin.ExecuteReportContentHandler.StreamPdf";
+  private static final String PDF_THRU_THRESHOLD =
+      "org.pentaho.reporting.platform.plugin.ExecuteReportContentHandler.PdfThruThreshold";
 
   private IPentahoSession userSession;
   private ReportContentGenerator contentGenerator;
@@ -86,8 +93,12 @@ public class ExecuteReportContentHandler {
       reportComponent.setInputs( inputs );
 
       final MasterReport report = reportComponent.getReport();
-      final StagingMode stagingMode = getStagingMode( inputs, report );
-      reportStagingHandler = new StagingHandler( outputStream, stagingMode, this.userSession );
+      if ( PdfPageableModule.PDF_EXPORT_TYPE.equals( reportComponent.getComputedOutputTarget() ) ) {
+        reportStagingHandler = createPdfStagingHandler( outputStream, inputs, report );
+      } else {
+        final StagingMode stagingMode = getStagingMode( inputs, report );
+        reportStagingHandler = new StagingHandler( outputStream, stagingMode, this.userSession );
+      }
 
       if ( reportStagingHandler.isFullyBuffered() ) {
         // it is safe to disable the buffered writing for the report now that we have a
@@ -215,6 +226,25 @@ public class ExecuteReportContentHandler {
     return objID;
   }
 
+  /**
+   * PDF documents can be streamed to the client as pages are completed. If enabled, PDF output uses THRU staging
+   * (unless the request asks for a specific mode), and in THRU mode the first bytes are held back, so that errors
+   * that occur before the first pages are done can still be sent as a proper error response.
+   */
+  private StagingHandler createPdfStagingHandler( final OutputStream outputStream, final Map<String, Object> inputs,
+                                                  final MasterReport report ) throws IOException {
+    final ExtendedConfiguration config = ClassicEngineBoot.getInstance().getExtendedConfig();
+    final StagingMode stagingMode;
+    if ( inputs.get( "report-staging-mode" ) == null && config.getBoolProperty( STREAM_PDF, false ) ) {
+      stagingMode = StagingMode.THRU;
+    } else {
+      stagingMode = getStagingMode( inputs, report );
+    }
+
+    final int threshold = config.getIntProperty( PDF_THRU_THRESHOLD, 0 );
+    return new StagingHandler( outputStream, stagingMode, this.userSession, threshold );
+  }
+
   private StagingMode getStagingMode( final Map<String, Object> inputs, final MasterReport report ) {
     final Object o = inputs.get( "report-staging-mode" );
     if ( o != null ) {
@@ -0,0 +1,243 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.ReportElement;
+import org.pentaho.reporting.engine.classic.core.Section;
+import org.pentaho.reporting.engine.classic.core.function.Expression;
+import org.pentaho.reporting.engine.classic.core.function.FormulaExpression;
+import org.pentaho.reporting.engine.classic.core.style.ElementStyleKeys;
+import org.pentaho.reporting.engine.classic.extensions.drilldown.DrillDownProfile;
+import org.pentaho.reporting.engine.classic.extensions.drilldown.DrillDownProfileMetaData;
+import org.pentaho.reporting.libraries.base.util.StringUtils;
+import org.pentaho.reporting.libraries.formula.DefaultFormulaContext;
+import org.pentaho.reporting.libraries.formula.lvalues.DataTable;
+import org.pentaho.reporting.libraries.formula.lvalues.FormulaFunction;
+import org.pentaho.reporting.libraries.formula.lvalues.LValue;
+import org.pentaho.reporting.libraries.formula.lvalues.StaticValue;
+import org.pentaho.reporting.libraries.formula.parser.FormulaParser;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+/**
+ * Collects the names of all parameters that are passed on by 'pentaho' drill-down links of a report. The result
+ * depends only on the report definition, so results for reports loaded from the repository are cached per report
+ * file and file version.
+ */
+class OutputParameterCollector {
+  private static final Log logger = LogFactory.getLog( OutputParameterCollector.class );
+  private static final int MAX_CACHED_REPORTS = 500;
+  private static final OutputParameterCollector INSTANCE = new OutputParameterCollector();
+
+  private static class CachedOutputParameter {
+    private final long version;
+    private final String[] parameter;
+
+    private CachedOutputParameter( final long version, final String[] parameter ) {
+      this.version = version;
+      this.parameter = parameter;
+    }
+  }
+
+  private final LinkedHashMap<ResourceKey, CachedOutputParameter> cache;
+
+  private OutputParameterCollector() {
+    cache = new LinkedHashMap<ResourceKey, CachedOutputParameter>( 16, 0.75f, true ) {
+      protected boolean removeEldestEntry( final Map.Entry<ResourceKey, CachedOutputParameter> eldest ) {
+        return size() > MAX_CACHED_REPORTS;
+      }
+    };
+  }
+
+  public static OutputParameterCollector getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the output parameter of the given report, reusing the result of an earlier call for the same version of
+   * the same report file. Reports without a definition source or without a known version are inspected every time.
+   *
+   * @param reportDefinition the report as loaded from its definition source.
+   * @return the output parameter names.
+   */
+  public String[] getOutputParameter( final MasterReport reportDefinition ) {
+    final ResourceKey source = reportDefinition.getDefinitionSource();
+    if ( source == null ) {
+      return collectParameter( reportDefinition );
+    }
+
+    final long version = computeVersion( reportDefinition, source );
+    if ( version == -1 ) {
+      return collectParameter( reportDefinition );
+    }
+
+    synchronized ( cache ) {
+      final CachedOutputParameter cached = cache.get( source );
+      if ( cached != null && cached.version == version ) {
+        return cached.parameter.clone();
+      }
+    }
+
+    final String[] parameter = collectParameter( reportDefinition );
+    synchronized ( cache ) {
+      cache.put( source, new CachedOutputParameter( version, parameter.clone() ) );
+    }
+    return parameter;
+  }
+
+  public void clearCache() {
+    synchronized ( cache ) {
+      cache.clear();
+    }
+  }
+
+  private long computeVersion( final MasterReport reportDefinition, final ResourceKey source ) {
+    try {
+      final ResourceManager resourceManager = reportDefinition.getResourceManager();
+      return resourceManager.load( source ).getVersion( resourceManager );
+    } catch ( ResourceException e ) {
+      logger.debug( "Unable to determine the version of report " + source, e ); // NON-NLS
+      return -1;
+    }
+  }
+
+  public String[] collectParameter( final MasterReport reportDefinition ) {
+    final LinkedHashSet<String> parameter = new LinkedHashSet<String>();
+
+    inspectElement( reportDefinition, parameter );
+    traverseSection( reportDefinition, parameter );
+
+    return parameter.toArray( new String[parameter.size()] );
+  }
+
+  private void traverseSection( final Section section, final LinkedHashSet<String> parameter ) {
+    final int count = section.getElementCount();
+    for ( int i = 0; i < count; i++ ) {
+      final ReportElement element = section.getElement( i );
+      inspectElement( element, parameter );
+      if ( element instanceof Section ) {
+        traverseSection( (Section) element, parameter );
+      }
+    }
+  }
+
+  private void inspectElement( final ReportElement element, final LinkedHashSet<String> parameter ) {
+    try {
+      final Expression expression = element.getStyleExpression( ElementStyleKeys.HREF_TARGET );
+      if ( expression instanceof FormulaExpression == false ) {
+        // DrillDown only works with the formula function of the same name
+        return;
+      }
+
+      final FormulaExpression fe = (FormulaExpression) expression;
+      final String formulaText = fe.getFormulaExpression();
+      if ( StringUtils.isEmpty( formulaText ) ) {
+        // DrillDown only works with the formula function of the same name
+        return;
+      }
+
+      if ( formulaText.startsWith( "DRILLDOWN" ) == false ) { // NON-NLS
+        // DrillDown only works if the function is the only element. Everything else is beyond our control.
+        return;
+      }
+      final FormulaParser formulaParser = new FormulaParser();
+      final LValue value = formulaParser.parse( formulaText );
+      if ( value instanceof FormulaFunction == false ) {
+        // Not a valid formula or a complex term - we do not handle that
+        return;
+      }
+      final DefaultFormulaContext context = new DefaultFormulaContext();
+      value.initialize( context );
+
+      final FormulaFunction fn = (FormulaFunction) value;
+      final LValue[] params = fn.getChildValues();
+      if ( params.length != 3 ) {
+        // Malformed formula: Need 3 parameter
+        return;
+      }
+      final String config = extractText( params[0] );
+      if ( config == null ) {
+        // Malformed formula: No statically defined config profile
+        return;
+      }
+
+      final DrillDownProfile profile = DrillDownProfileMetaData.getInstance().getDrillDownProfile( config );
+      if ( profile == null ) {
+        // Malformed formula: Unknown drilldown profile
+        return;
+      }
+
+      if ( "pentaho".equals( profile.getAttribute( "group" ) ) == false ) // NON-NLS
+      {
+        // Only 'pentaho' drill-down profiles can be used. Filters out all other third party drilldowns
+        return;
+      }
+
+      if ( params[2] instanceof DataTable == false ) {
+        // Malformed formula: Not a parameter table
+        return;
+      }
+      final DataTable dataTable = (DataTable) params[2];
+      final int rowCount = dataTable.getRowCount();
+      final int colCount = dataTable.getColumnCount();
+      if ( colCount != 2 ) {
+        // Malformed formula: Parameter table is invalid. Must be two cols, many rows ..
+        return;
+      }
+
+      for ( int i = 0; i < rowCount; i++ ) {
+        final LValue valueAt = dataTable.getValueAt( i, 0 );
+        final String name = extractText( valueAt );
+        if ( name == null ) {
+          continue;
+        }
+        parameter.add( name );
+      }
+    } catch ( Exception e ) {
+      // ignore ..
+      CommonUtil.checkStyleIgnore();
+    }
+  }
+
+  private String extractText( final LValue value ) {
+    if ( value == null ) {
+      return null;
+    }
+    if ( value.isConstant() ) {
+      if ( value instanceof StaticValue ) {
+        final StaticValue staticValue = (StaticValue) value;
+        final Object o = staticValue.getValue();
+        if ( o == null ) {
+          return null; // NON-NLS
+        }
+        return String.valueOf( o );
+      }
+    }
+    return null; // NON-NLS
+
+  }
+
+}
@@ -83,6 +83,9 @@ public class ParameterContentGenerator extends SimpleContentGenerator {
 
   @Override
   public String getMimeType() {
+    if ( ParameterXmlContentHandler.isJsonFormatRequested( getRequestParameters() ) ) {
+      return "application/json";
+    }
     return "text/xml";
   }
 
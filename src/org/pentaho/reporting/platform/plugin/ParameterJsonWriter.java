@@ -0,0 +1,321 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Writes the parameter document produced by the {@link ParameterXmlContentHandler} as compact JSON. The structure
+ * mirrors the XML format, but the values of list parameters are written column-wise: The value type is given once,
+ * keys and labels are arrays, and selected, encoded and null states are given as lists of row indices.
+ * <p/>
+ * <pre>
+ * { "is-prompt-needed": "false", ..,
+ *   "parameters": [ { "name": "p", "type": "java.lang.String", ..,
+ *                     "attributes": { "namespace": { "name": "value" } },
+ *                     "values": { "type": "java.lang.String", "keys": [ .. ], "labels": [ .. ],
+ *                                 "selected": [ 0 ], "encoded": [ ], "nulls": [ ] } } ],
+ *   "errors": [ { "parameter": "p", "message": ".." } ],
+ *   "global-errors": [ { "message": ".." } ],
+ *   "output-parameters": [ { "displayName": "..", "id": ".." } ] }
+ * </pre>
+ * All attribute values are written as strings, exactly as they would appear in the XML document.
+ */
+class ParameterJsonWriter {
+  private Writer writer;
+
+  ParameterJsonWriter() {
+  }
+
+  public void write( final Document document, final OutputStream outputStream ) throws IOException {
+    writer = new BufferedWriter( new OutputStreamWriter( outputStream, "UTF-8" ) ); // NON-NLS
+    try {
+      writeParameters( document.getDocumentElement() );
+      writer.flush();
+    } finally {
+      writer = null;
+    }
+  }
+
+  private void writeParameters( final Element parameters ) throws IOException {
+    final ArrayList<Element> parameterElements = new ArrayList<Element>();
+    final ArrayList<Element> errorElements = new ArrayList<Element>();
+    final ArrayList<Element> globalErrorElements = new ArrayList<Element>();
+    final ArrayList<Element> outputParameterElements = new ArrayList<Element>();
+
+    final NodeList childNodes = parameters.getChildNodes();
+    for ( int i = 0; i < childNodes.getLength(); i++ ) {
+      final Node node = childNodes.item( i );
+      if ( node instanceof Element == false ) {
+        continue;
+      }
+      final Element element = (Element) node;
+      final String tagName = element.getTagName();
+      if ( "parameter".equals( tagName ) ) { // NON-NLS
+        parameterElements.add( element );
+      } else if ( "output-parameter".equals( tagName ) ) { // NON-NLS
+        outputParameterElements.add( element );
+      } else if ( "errors".equals( tagName ) ) { // NON-NLS
+        final NodeList errors = element.getChildNodes();
+        for ( int e = 0; e < errors.getLength(); e++ ) {
+          final Node error = errors.item( e );
+          if ( error instanceof Element == false ) {
+            continue;
+          }
+          if ( "global-error".equals( ( (Element) error ).getTagName() ) ) { // NON-NLS
+            globalErrorElements.add( (Element) error );
+          } else {
+            errorElements.add( (Element) error );
+          }
+        }
+      }
+    }
+
+    writer.write( '{' );
+    boolean first = writeAttributes( parameters, true );
+    first = writeElementArray( "parameters", parameterElements, first ); // NON-NLS
+    first = writeElementArray( "errors", errorElements, first ); // NON-NLS
+    first = writeElementArray( "global-errors", globalErrorElements, first ); // NON-NLS
+    writeElementArray( "output-parameters", outputParameterElements, first ); // NON-NLS
+    writer.write( '}' );
+  }
+
+  private boolean writeElementArray( final String name, final ArrayList<Element> elements, final boolean first )
+    throws IOException {
+    if ( elements.isEmpty() ) {
+      return first;
+    }
+    writeName( name, first );
+    writer.write( '[' );
+    for ( int i = 0; i < elements.size(); i++ ) {
+      if ( i > 0 ) {
+        writer.write( ',' );
+      }
+      final Element element = elements.get( i );
+      if ( "parameter".equals( element.getTagName() ) ) { // NON-NLS
+        writeParameter( element );
+      } else {
+        writer.write( '{' );
+        writeAttributes( element, true );
+        writer.write( '}' );
+      }
+    }
+    writer.write( ']' );
+    return false;
+  }
+
+  private void writeParameter( final Element parameter ) throws IOException {
+    final Map<String, Map<String, String>> attributes = new LinkedHashMap<String, Map<String, String>>();
+    Element values = null;
+
+    final NodeList childNodes = parameter.getChildNodes();
+    for ( int i = 0; i < childNodes.getLength(); i++ ) {
+      final Node node = childNodes.item( i );
+      if ( node instanceof Element == false ) {
+        continue;
+      }
+      final Element element = (Element) node;
+      if ( "attribute".equals( element.getTagName() ) ) { // NON-NLS
+        final String namespace = element.getAttribute( "namespace" ); // NON-NLS
+        Map<String, String> namespaceAttributes = attributes.get( namespace );
+        if ( namespaceAttributes == null ) {
+          namespaceAttributes = new LinkedHashMap<String, String>();
+          attributes.put( namespace, namespaceAttributes );
+        }
+        namespaceAttributes.put( element.getAttribute( "name" ), getAttribute( element, "value" ) ); // NON-NLS
+      } else if ( "values".equals( element.getTagName() ) ) { // NON-NLS
+        values = element;
+      }
+    }
+
+    writer.write( '{' );
+    boolean first = writeAttributes( parameter, true );
+    if ( attributes.isEmpty() == false ) {
+      writeName( "attributes", first ); // NON-NLS
+      writer.write( '{' );
+      boolean firstNamespace = true;
+      for ( final Map.Entry<String, Map<String, String>> namespace : attributes.entrySet() ) {
+        writeName( namespace.getKey(), firstNamespace );
+        firstNamespace = false;
+        writer.write( '{' );
+        boolean firstAttribute = true;
+        for ( final Map.Entry<String, String> attribute : namespace.getValue().entrySet() ) {
+          writeName( attribute.getKey(), firstAttribute );
+          firstAttribute = false;
+          writeString( attribute.getValue() );
+        }
+        writer.write( '}' );
+      }
+      writer.write( '}' );
+      first = false;
+    }
+    if ( values != null ) {
+      writeName( "values", first ); // NON-NLS
+      writeValues( values );
+    }
+    writer.write( '}' );
+  }
+
+  private void writeValues( final Element values ) throws IOException {
+    final ArrayList<Element> valueElements = new ArrayList<Element>();
+    final NodeList childNodes = values.getChildNodes();
+    for ( int i = 0; i < childNodes.getLength(); i++ ) {
+      final Node node = childNodes.item( i );
+      if ( node instanceof Element ) {
+        valueElements.add( (Element) node );
+      }
+    }
+
+    final int size = valueElements.size();
+    writer.write( '{' );
+    writeName( "type", true ); // NON-NLS
+    if ( size == 0 ) {
+      writeString( null );
+    } else {
+      writeString( getAttribute( valueElements.get( 0 ), "type" ) ); // NON-NLS
+    }
+
+    writeName( "keys", false ); // NON-NLS
+    writer.write( '[' );
+    for ( int i = 0; i < size; i++ ) {
+      if ( i > 0 ) {
+        writer.write( ',' );
+      }
+      writeString( getAttribute( valueElements.get( i ), "value" ) ); // NON-NLS
+    }
+    writer.write( ']' );
+
+    writeName( "labels", false ); // NON-NLS
+    writer.write( '[' );
+    for ( int i = 0; i < size; i++ ) {
+      if ( i > 0 ) {
+        writer.write( ',' );
+      }
+      writeString( getAttribute( valueElements.get( i ), "label" ) ); // NON-NLS
+    }
+    writer.write( ']' );
+
+    writeIndices( "selected", valueElements ); // NON-NLS
+    writeIndices( "encoded", valueElements ); // NON-NLS
+    writeName( "nulls", false ); // NON-NLS
+    writer.write( '[' );
+    boolean first = true;
+    for ( int i = 0; i < size; i++ ) {
+      if ( "true".equals( valueElements.get( i ).getAttribute( "null" ) ) ) { // NON-NLS
+        if ( first == false ) {
+          writer.write( ',' );
+        }
+        writer.write( String.valueOf( i ) );
+        first = false;
+      }
+    }
+    writer.write( ']' );
+    writer.write( '}' );
+  }
+
+  private void writeIndices( final String flag, final ArrayList<Element> valueElements ) throws IOException {
+    writeName( flag, false );
+    writer.write( '[' );
+    boolean first = true;
+    for ( int i = 0; i < valueElements.size(); i++ ) {
+      if ( "true".equals( valueElements.get( i ).getAttribute( flag ) ) ) { // NON-NLS
+        if ( first == false ) {
+          writer.write( ',' );
+        }
+        writer.write( String.valueOf( i ) );
+        first = false;
+      }
+    }
+    writer.write( ']' );
+  }
+
+  private boolean writeAttributes( final Element element, boolean first ) throws IOException {
+    final NamedNodeMap attributes = element.getAttributes();
+    for ( int i = 0; i < attributes.getLength(); i++ ) {
+      final Node attribute = attributes.item( i );
+      writeName( attribute.getNodeName(), first );
+      writeString( attribute.getNodeValue() );
+      first = false;
+    }
+    return first;
+  }
+
+  private static String getAttribute( final Element element, final String name ) {
+    if ( element.hasAttribute( name ) == false ) {
+      return null;
+    }
+    return element.getAttribute( name );
+  }
+
+  private void writeName( final String name, final boolean first ) throws IOException {
+    if ( first == false ) {
+      writer.write( ',' );
+    }
+    writeString( name );
+    writer.write( ':' );
+  }
+
+  private void writeString( final String value ) throws IOException {
+    if ( value == null ) {
+      writer.write( "null" ); // NON-NLS
+      return;
+    }
+
+    writer.write( '"' );
+    final int length = value.length();
+    int start = 0;
+    for ( int i = 0; i < length; i++ ) {
+      final char c = value.charAt( i );
+      final String escape;
+      if ( c == '"' ) {
+        escape = "\\\"";
+      } else if ( c == '\\' ) {
+        escape = "\\\\";
+      } else if ( c == '\n' ) {
+        escape = "\\n";
+      } else if ( c == '\r' ) {
+        escape = "\\r";
+      } else if ( c == '\t' ) {
+        escape = "\\t";
+      } else if ( c < 0x20 || c == 0x2028 || c == 0x2029 ) {
+        final String hex = Integer.toHexString( c );
+        escape = "\\u0000".substring( 0, 6 - hex.length() ) + hex;
+      } else {
+        continue;
+      }
+      writer.write( value, start, i - start );
+      writer.write( escape );
+      start = i + 1;
+    }
+    writer.write( value, start, length - start );
+    writer.write( '"' );
+  }
+}
@@ -0,0 +1,129 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Encoder;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+
+/**
+ * Encodes parameter labels and values for use in HTML attributes. Strings that consist only of characters that the
+ * ESAPI encoder leaves untouched are returned as they are, without calling ESAPI. All other results are kept in a
+ * bounded, least-recently-used cache that is shared by all parameter requests, as labels of lookup lists tend to be
+ * the same for all users.
+ */
+public final class ParameterLabelEncoder {
+  private static final String CACHE_SIZE_KEY =
+      "org.pentaho.reporting.platform.plugin.ParameterLabelEncoder.CacheSize";
+  private static final int DEFAULT_CACHE_SIZE = 10000;
+  /**
+   * Longer strings are encoded every time, so that the cache's memory use is bounded by its entry count.
+   */
+  private static final int MAX_CACHED_LENGTH = 256;
+
+  private static class EncodedLabelCache extends LinkedHashMap<String, String> {
+    private final int maximumSize;
+
+    private EncodedLabelCache( final int maximumSize ) {
+      super( 16, 0.75f, true );
+      this.maximumSize = maximumSize;
+    }
+
+    protected boolean removeEldestEntry( final Map.Entry<String, String> eldest ) {
+      return size() > maximumSize;
+    }
+  }
+
+  private static ParameterLabelEncoder instance;
+
+  private final Encoder encoder;
+  private final EncodedLabelCache cache;
+
+  private ParameterLabelEncoder( final Encoder encoder, final int cacheSize ) {
+    this.encoder = encoder;
+    this.cache = new EncodedLabelCache( Math.max( 0, cacheSize ) );
+  }
+
+  public static synchronized ParameterLabelEncoder getInstance() {
+    if ( instance == null ) {
+      final int cacheSize =
+          ClassicEngineBoot.getInstance().getExtendedConfig().getIntProperty( CACHE_SIZE_KEY, DEFAULT_CACHE_SIZE );
+      instance = new ParameterLabelEncoder( ESAPI.encoder(), cacheSize );
+    }
+    return instance;
+  }
+
+  public String encodeForHTMLAttribute( final String value ) {
+    if ( value == null ) {
+      return null;
+    }
+    if ( isSafe( value ) ) {
+      return value;
+    }
+    if ( value.length() > MAX_CACHED_LENGTH ) {
+      return encoder.encodeForHTMLAttribute( value );
+    }
+
+    synchronized ( cache ) {
+      final String cached = cache.get( value );
+      if ( cached != null ) {
+        return cached;
+      }
+    }
+
+    final String encoded = encoder.encodeForHTMLAttribute( value );
+    synchronized ( cache ) {
+      cache.put( value, encoded );
+    }
+    return encoded;
+  }
+
+  public void clearCache() {
+    synchronized ( cache ) {
+      cache.clear();
+    }
+  }
+
+  /**
+   * Checks whether the string consists only of ASCII letters, digits and the characters the ESAPI HTML-attribute
+   * codec treats as immune (',', '.', '-', '_'). Such strings are returned unchanged by ESAPI.
+   */
+  static boolean isSafe( final String value ) {
+    final int length = value.length();
+    for ( int i = 0; i < length; i++ ) {
+      final char c = value.charAt( i );
+      if ( c >= 'a' && c <= 'z' ) {
+        continue;
+      }
+      if ( c >= 'A' && c <= 'Z' ) {
+        continue;
+      }
+      if ( c >= '0' && c <= '9' ) {
+        continue;
+      }
+      if ( c == ',' || c == '.' || c == '-' || c == '_' ) {
+        continue;
+      }
+      return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,358 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An index over the selected values of a parameter. All numeric selections are normalized so that keys of different
+ * numeric classes (Integer, Long, BigDecimal, Double ..) match each other. Integral numbers are held in a primitive
+ * hash table, so looking up the common key types of a list parameter does not create any temporary objects. Fractional
+ * numbers are compared by their decimal value.
+ * <p/>
+ * The index also tracks which selections have been matched by a possible value, so that the remaining values can be
+ * rendered for non-strict parameters.
+ */
+class ParameterSelectionIndex {
+  private static final int NOT_FOUND = -1;
+
+  /**
+   * A minimal open-addressing hash table mapping long keys to the position of the selection.
+   */
+  private static class LongIndex {
+    private long[] keys;
+    private int[] positions;
+    private boolean[] used;
+    private int size;
+
+    private LongIndex() {
+      keys = new long[16];
+      positions = new int[16];
+      used = new boolean[16];
+    }
+
+    private static int hash( final long key ) {
+      final long h = key * 0x9E3779B97F4A7C15L;
+      return (int) ( h ^ ( h >>> 32 ) );
+    }
+
+    public int get( final long key ) {
+      final int mask = keys.length - 1;
+      int slot = hash( key ) & mask;
+      while ( used[slot] ) {
+        if ( keys[slot] == key ) {
+          return positions[slot];
+        }
+        slot = ( slot + 1 ) & mask;
+      }
+      return NOT_FOUND;
+    }
+
+    public void put( final long key, final int position ) {
+      if ( ( size + 1 ) * 2 > keys.length ) {
+        rehash( keys.length * 2 );
+      }
+      if ( insert( key, position ) ) {
+        size += 1;
+      }
+    }
+
+    private boolean insert( final long key, final int position ) {
+      final int mask = keys.length - 1;
+      int slot = hash( key ) & mask;
+      while ( used[slot] ) {
+        if ( keys[slot] == key ) {
+          return false;
+        }
+        slot = ( slot + 1 ) & mask;
+      }
+      used[slot] = true;
+      keys[slot] = key;
+      positions[slot] = position;
+      return true;
+    }
+
+    private void rehash( final int capacity ) {
+      final long[] oldKeys = keys;
+      final int[] oldPositions = positions;
+      final boolean[] oldUsed = used;
+      keys = new long[capacity];
+      positions = new int[capacity];
+      used = new boolean[capacity];
+      for ( int i = 0; i < oldKeys.length; i++ ) {
+        if ( oldUsed[i] ) {
+          insert( oldKeys[i], oldPositions[i] );
+        }
+      }
+    }
+  }
+
+  private final ArrayList<Object> values;
+  private boolean[] matched;
+  private LongIndex integralIndex;
+  private HashMap<Object, Integer> fractionalIndex;
+  private HashMap<Object, Integer> objectIndex;
+  private int nullPosition;
+
+  public ParameterSelectionIndex() {
+    values = new ArrayList<Object>();
+    matched = new boolean[16];
+    nullPosition = NOT_FOUND;
+  }
+
+  /**
+   * Adds a selection to the index. Arrays are added element by element, duplicate selections are ignored.
+   *
+   * @param selection the selection, can be null.
+   */
+  public void add( final Object selection ) {
+    if ( selection != null && selection.getClass().isArray() ) {
+      final int length = Array.getLength( selection );
+      for ( int i = 0; i < length; i++ ) {
+        addValue( Array.get( selection, i ) );
+      }
+    } else {
+      addValue( selection );
+    }
+  }
+
+  private void addValue( final Object value ) {
+    if ( indexOf( value ) != NOT_FOUND ) {
+      return;
+    }
+
+    final int position = values.size();
+    if ( value == null ) {
+      nullPosition = position;
+    } else if ( value instanceof Number ) {
+      putNumber( (Number) value, position );
+    } else {
+      if ( objectIndex == null ) {
+        objectIndex = new HashMap<Object, Integer>();
+      }
+      objectIndex.put( value, position );
+    }
+
+    values.add( resolveValue( value ) );
+    if ( position == matched.length ) {
+      final boolean[] newMatched = new boolean[matched.length * 2];
+      System.arraycopy( matched, 0, newMatched, 0, matched.length );
+      matched = newMatched;
+    }
+  }
+
+  private static Object resolveValue( final Object value ) {
+    // convert all numerics to BigDecimals for a stable string representation
+    if ( value instanceof Number ) {
+      return new BigDecimal( String.valueOf( value ) );
+    }
+    return value;
+  }
+
+  public int size() {
+    return values.size();
+  }
+
+  public boolean isEmpty() {
+    return values.isEmpty();
+  }
+
+  public Object getFirstSelection() {
+    if ( values.isEmpty() ) {
+      return null;
+    }
+    return values.get( 0 );
+  }
+
+  public boolean contains( final Object key ) {
+    return indexOf( key ) != NOT_FOUND;
+  }
+
+  /**
+   * Checks whether the given key is selected and marks the selection as handled.
+   *
+   * @param key the key of a possible value, can be null.
+   * @return true, if the key is selected.
+   */
+  public boolean markSelected( final Object key ) {
+    final int position = indexOf( key );
+    if ( position == NOT_FOUND ) {
+      return false;
+    }
+    matched[position] = true;
+    return true;
+  }
+
+  /**
+   * Returns all selections that have not been matched by {@link #markSelected(Object)}. Numeric selections are
+   * returned as BigDecimal.
+   *
+   * @return the unmatched selections, in the order they were added.
+   */
+  public List<Object> getUnmatchedSelections() {
+    final ArrayList<Object> result = new ArrayList<Object>();
+    final int size = values.size();
+    for ( int i = 0; i < size; i++ ) {
+      if ( matched[i] == false ) {
+        result.add( values.get( i ) );
+      }
+    }
+    return result;
+  }
+
+  private int indexOf( final Object key ) {
+    if ( key == null ) {
+      return nullPosition;
+    }
+    if ( key instanceof Number ) {
+      return indexOfNumber( (Number) key );
+    }
+    if ( objectIndex == null ) {
+      return NOT_FOUND;
+    }
+    final Integer position = objectIndex.get( key );
+    if ( position == null ) {
+      return NOT_FOUND;
+    }
+    return position;
+  }
+
+  private int indexOfNumber( final Number number ) {
+    final long integral;
+    if ( isIntegralNumber( number ) ) {
+      integral = number.longValue();
+    } else if ( isIntegralFloatingPoint( number ) ) {
+      integral = (long) number.doubleValue();
+    } else {
+      final Object key = toFractionalKey( number );
+      if ( key instanceof BigDecimal && isIntegralNumber( (BigDecimal) key ) ) {
+        if ( integralIndex == null ) {
+          return NOT_FOUND;
+        }
+        return integralIndex.get( ( (BigDecimal) key ).longValue() );
+      }
+      if ( fractionalIndex == null ) {
+        return NOT_FOUND;
+      }
+      final Integer position = fractionalIndex.get( key );
+      if ( position == null ) {
+        return NOT_FOUND;
+      }
+      return position;
+    }
+
+    if ( integralIndex == null ) {
+      return NOT_FOUND;
+    }
+    return integralIndex.get( integral );
+  }
+
+  private void putNumber( final Number number, final int position ) {
+    final long integral;
+    if ( isIntegralNumber( number ) ) {
+      integral = number.longValue();
+    } else if ( isIntegralFloatingPoint( number ) ) {
+      integral = (long) number.doubleValue();
+    } else {
+      final Object key = toFractionalKey( number );
+      if ( key instanceof BigDecimal && isIntegralNumber( (BigDecimal) key ) ) {
+        integral = ( (BigDecimal) key ).longValue();
+      } else {
+        if ( fractionalIndex == null ) {
+          fractionalIndex = new HashMap<Object, Integer>();
+        }
+        fractionalIndex.put( key, position );
+        return;
+      }
+    }
+
+    if ( integralIndex == null ) {
+      integralIndex = new LongIndex();
+    }
+    integralIndex.put( integral, position );
+  }
+
+  private static boolean isIntegralFloatingPoint( final Number number ) {
+    return ( number instanceof Double || number instanceof Float ) && isIntegral( number.doubleValue() );
+  }
+
+  /**
+   * Normalizes a non-integral number for the fractional index. Like the string-based comparison used for parameter
+   * selections, the number is converted via its decimal string representation, so that a Float 0.1f matches a Double
+   * or BigDecimal 0.1, while distinct high-precision BigDecimals stay distinct. Values without a decimal
+   * representation (NaN, infinity) are kept as Double.
+   */
+  private static Object toFractionalKey( final Number number ) {
+    if ( number instanceof Double || number instanceof Float ) {
+      final double value = number.doubleValue();
+      if ( Double.isNaN( value ) || Double.isInfinite( value ) ) {
+        return Double.valueOf( value );
+      }
+    }
+    final BigDecimal decimal;
+    if ( number instanceof BigDecimal ) {
+      decimal = (BigDecimal) number;
+    } else {
+      decimal = new BigDecimal( String.valueOf( number ) );
+    }
+    if ( decimal.signum() == 0 ) {
+      return BigDecimal.ZERO;
+    }
+    return decimal.stripTrailingZeros();
+  }
+
+  /**
+   * Checks whether the number is a whole number that can be represented as long without loss of precision. Doubles
+   * and floats are not handled here, they are normalized via {@link #isIntegral(double)}.
+   */
+  private static boolean isIntegralNumber( final Number number ) {
+    if ( number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte ) {
+      return true;
+    }
+    if ( number instanceof BigInteger ) {
+      return ( (BigInteger) number ).bitLength() < 64;
+    }
+    if ( number instanceof BigDecimal ) {
+      BigDecimal decimal = (BigDecimal) number;
+      if ( decimal.signum() == 0 ) {
+        return true;
+      }
+      if ( decimal.scale() > 0 ) {
+        decimal = decimal.stripTrailingZeros();
+        if ( decimal.scale() > 0 ) {
+          return false;
+        }
+      }
+      final int digits = decimal.precision() - decimal.scale();
+      if ( digits < 19 ) {
+        return true;
+      }
+      return digits == 19 && decimal.toBigInteger().bitLength() < 64;
+    }
+    return false;
+  }
+
+  private static boolean isIntegral( final double value ) {
+    return value == Math.rint( value ) && value >= Long.MIN_VALUE && value < Long.MAX_VALUE;
+  }
+}
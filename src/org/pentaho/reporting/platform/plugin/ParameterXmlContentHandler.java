@@ -19,7 +19,6 @@ package org.pentaho.reporting.platform.plugin;
 
 import java.io.OutputStream;
 import java.io.Serializable;
-import java.lang.reflect.Array;
 import java.math.BigDecimal;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -27,7 +26,6 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.TimeZone;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -45,10 +43,6 @@ import org.pentaho.platform.util.UUIDUtil;
 import org.pentaho.reporting.engine.classic.core.AttributeNames;
 import org.pentaho.reporting.engine.classic.core.MasterReport;
 import org.pentaho.reporting.engine.classic.core.ReportDataFactoryException;
-import org.pentaho.reporting.engine.classic.core.ReportElement;
-import org.pentaho.reporting.engine.classic.core.Section;
-import org.pentaho.reporting.engine.classic.core.function.Expression;
-import org.pentaho.reporting.engine.classic.core.function.FormulaExpression;
 import org.pentaho.reporting.engine.classic.core.modules.output.table.html.HtmlTableModule;
 import org.pentaho.reporting.engine.classic.core.parameters.AbstractParameter;
 import org.pentaho.reporting.engine.classic.core.parameters.DefaultParameterContext;
@@ -63,151 +57,19 @@ import org.pentaho.reporting.engine.classic.core.parameters.ReportParameterDefin
 import org.pentaho.reporting.engine.classic.core.parameters.StaticListParameter;
 import org.pentaho.reporting.engine.classic.core.parameters.ValidationMessage;
 import org.pentaho.reporting.engine.classic.core.parameters.ValidationResult;
-import org.pentaho.reporting.engine.classic.core.style.ElementStyleKeys;
 import org.pentaho.reporting.engine.classic.core.util.ReportParameterValues;
 import org.pentaho.reporting.engine.classic.core.util.beans.BeanException;
 import org.pentaho.reporting.engine.classic.core.util.beans.ConverterRegistry;
 import org.pentaho.reporting.engine.classic.core.util.beans.ValueConverter;
-import org.pentaho.reporting.engine.classic.extensions.drilldown.DrillDownProfile;
-import org.pentaho.reporting.engine.classic.extensions.drilldown.DrillDownProfileMetaData;
 import org.pentaho.reporting.libraries.base.util.NullOutputStream;
 import org.pentaho.reporting.libraries.base.util.StringUtils;
-import org.pentaho.reporting.libraries.formula.DefaultFormulaContext;
-import org.pentaho.reporting.libraries.formula.lvalues.DataTable;
-import org.pentaho.reporting.libraries.formula.lvalues.FormulaFunction;
-import org.pentaho.reporting.libraries.formula.lvalues.LValue;
-import org.pentaho.reporting.libraries.formula.lvalues.StaticValue;
-import org.pentaho.reporting.libraries.formula.parser.FormulaParser;
 import org.pentaho.reporting.platform.plugin.messages.Messages;
 import org.pentaho.reporting.platform.plugin.output.FastExportReportOutputHandlerFactory;
 import org.pentaho.reporting.platform.plugin.output.ReportOutputHandlerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.owasp.esapi.Encoder;
 
 public class ParameterXmlContentHandler {
-  private static class OutputParameterCollector {
-    private OutputParameterCollector() {
-    }
-
-    public String[] collectParameter( final MasterReport reportDefinition ) {
-      final LinkedHashSet<String> parameter = new LinkedHashSet<String>();
-
-      inspectElement( reportDefinition, parameter );
-      traverseSection( reportDefinition, parameter );
-
-      return parameter.toArray( new String[parameter.size()] );
-    }
-
-    private void traverseSection( final Section section, final LinkedHashSet<String> parameter ) {
-      final int count = section.getElementCount();
-      for ( int i = 0; i < count; i++ ) {
-        final ReportElement element = section.getElement( i );
-        inspectElement( element, parameter );
-        if ( element instanceof Section ) {
-          traverseSection( (Section) element, parameter );
-        }
-      }
-    }
-
-    private void inspectElement( final ReportElement element, final LinkedHashSet<String> parameter ) {
-      try {
-        final Expression expression = element.getStyleExpression( ElementStyleKeys.HREF_TARGET );
-        if ( expression instanceof FormulaExpression == false ) {
-          // DrillDown only works with the formula function of the same name
-          return;
-        }
-
-        final FormulaExpression fe = (FormulaExpression) expression;
-        final String formulaText = fe.getFormulaExpression();
-        if ( StringUtils.isEmpty( formulaText ) ) {
-          // DrillDown only works with the formula function of the same name
-          return;
-        }
-
-        if ( formulaText.startsWith( "DRILLDOWN" ) == false ) { // NON-NLS
-          // DrillDown only works if the function is the only element. Everything else is beyond our control.
-          return;
-        }
-        final FormulaParser formulaParser = new FormulaParser();
-        final LValue value = formulaParser.parse( formulaText );
-        if ( value instanceof FormulaFunction == false ) {
-          // Not a valid formula or a complex term - we do not handle that
-          return;
-        }
-        final DefaultFormulaContext context = new DefaultFormulaContext();
-        value.initialize( context );
-
-        final FormulaFunction fn = (FormulaFunction) value;
-        final LValue[] params = fn.getChildValues();
-        if ( params.length != 3 ) {
-          // Malformed formula: Need 3 parameter
-          return;
-        }
-        final String config = extractText( params[0] );
-        if ( config == null ) {
-          // Malformed formula: No statically defined config profile
-          return;
-        }
-
-        final DrillDownProfile profile = DrillDownProfileMetaData.getInstance().getDrillDownProfile( config );
-        if ( profile == null ) {
-          // Malformed formula: Unknown drilldown profile
-          return;
-        }
-
-        if ( "pentaho".equals( profile.getAttribute( "group" ) ) == false ) // NON-NLS
-        {
-          // Only 'pentaho' drill-down profiles can be used. Filters out all other third party drilldowns
-          return;
-        }
-
-        if ( params[2] instanceof DataTable == false ) {
-          // Malformed formula: Not a parameter table
-          return;
-        }
-        final DataTable dataTable = (DataTable) params[2];
-        final int rowCount = dataTable.getRowCount();
-        final int colCount = dataTable.getColumnCount();
-        if ( colCount != 2 ) {
-          // Malformed formula: Parameter table is invalid. Must be two cols, many rows ..
-          return;
-        }
-
-        for ( int i = 0; i < rowCount; i++ ) {
-          final LValue valueAt = dataTable.getValueAt( i, 0 );
-          final String name = extractText( valueAt );
-          if ( name == null ) {
-            continue;
-          }
-          parameter.add( name );
-        }
-      } catch ( Exception e ) {
-        // ignore ..
-        CommonUtil.checkStyleIgnore();
-      }
-    }
-
-    private String extractText( final LValue value ) {
-      if ( value == null ) {
-        return null;
-      }
-      if ( value.isConstant() ) {
-        if ( value instanceof StaticValue ) {
-          final StaticValue staticValue = (StaticValue) value;
-          final Object o = staticValue.getValue();
-          if ( o == null ) {
-            return null; // NON-NLS
-          }
-          return String.valueOf( o );
-        }
-      }
-      return null; // NON-NLS
-
-    }
-
-  }
-
   private static final Log logger = LogFactory.getLog( ParameterXmlContentHandler.class );
   public static final String SYS_PARAM_ACCEPTED_PAGE = "accepted-page";
 
@@ -219,6 +81,8 @@ public class ParameterXmlContentHandler {
   private Map<String, Object> inputs;
 
   public static final String SYS_PARAM_RENDER_MODE = "renderMode";
+  public static final String PARAMETER_FORMAT = "parameterFormat";
+  public static final String PARAMETER_FORMAT_JSON = "json";
   private static final String SYS_PARAM_OUTPUT_TARGET = SimpleReportingComponent.OUTPUT_TARGET;
   private static final String SYS_PARAM_DESTINATION = "destination";
   public static final String SYS_PARAM_CONTENT_LINK = "::cl";
@@ -284,6 +148,20 @@ public class ParameterXmlContentHandler {
     return systemParameter;
   }
 
+  /**
+   * Checks whether the client asked for the compact JSON representation of the parameter document instead of the
+   * default XML format.
+   *
+   * @param requestParameters the request parameters, can be null.
+   * @return true, if the parameter document should be written as JSON.
+   */
+  public static boolean isJsonFormatRequested( final IParameterProvider requestParameters ) {
+    if ( requestParameters == null ) {
+      return false;
+    }
+    return PARAMETER_FORMAT_JSON.equals( requestParameters.getStringParameter( PARAMETER_FORMAT, null ) );
+  }
+
   /**
    * Defines whether parameter with display-type "datepicker" that have no default value set shall default to "today".
    * This setting generates a default value for the parameter UI, but has no effect otherwise. It is flawed from the
@@ -313,6 +191,8 @@ public class ParameterXmlContentHandler {
 
     final IParameterProvider requestParams = getRequestParameters();
 
+    // output parameter can only be cached for reports that are known to be unmodified copies of the report file.
+    final boolean reportLoadedFromFile = report == null;
     final SimpleReportingComponent reportComponent = new SimpleReportingComponent();
     reportComponent.setReportFileId( fileId );
     if ( report != null ) {
@@ -437,7 +317,12 @@ public class ParameterXmlContentHandler {
         parameters.appendChild( createErrorElements( vr ) );
       }
 
-      final String[] outputParameter = new OutputParameterCollector().collectParameter( report );
+      final String[] outputParameter;
+      if ( reportLoadedFromFile ) {
+        outputParameter = OutputParameterCollector.getInstance().getOutputParameter( report );
+      } else {
+        outputParameter = OutputParameterCollector.getInstance().collectParameter( report );
+      }
       for ( int i = 0; i < outputParameter.length; i++ ) {
         final String outputParameterName = outputParameter[i];
         // <output-parameter displayName="Territory" id="[Markets].[Territory]"/>
@@ -455,10 +340,14 @@ public class ParameterXmlContentHandler {
       }
       document.appendChild( parameters );
 
-      final DOMSource source = new DOMSource( document );
-      final StreamResult result = new StreamResult( outputStream );
-      final Transformer transformer = TransformerFactory.newInstance().newTransformer();
-      transformer.transform( source, result );
+      if ( isJsonFormatRequested( requestParams ) ) {
+        new ParameterJsonWriter().write( document, outputStream );
+      } else {
+        final DOMSource source = new DOMSource( document );
+        final StreamResult result = new StreamResult( outputStream );
+        final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform( source, result );
+      }
       // close parameter context
     } finally {
       parameterContext.close();
@@ -561,35 +450,25 @@ public class ParameterXmlContentHandler {
         elementValueType = valueType;
       }
 
-      final LinkedHashSet<Object> selectionSet = new LinkedHashSet<Object>();
+      final ParameterSelectionIndex selectionIndex = new ParameterSelectionIndex();
       if ( selections != null ) {
-        if ( selections.getClass().isArray() ) {
-          final int length = Array.getLength( selections );
-          for ( int i = 0; i < length; i++ ) {
-            final Object value = Array.get( selections, i );
-            selectionSet.add( resolveSelectionValue( value ) );
-          }
-        } else {
-          selectionSet.add( resolveSelectionValue( selections ) );
-        }
+        selectionIndex.add( selections );
       } else {
         final String type =
             parameter.getParameterAttribute( ParameterAttributeNames.Core.NAMESPACE, ParameterAttributeNames.Core.TYPE,
                 parameterContext );
         if ( ParameterAttributeNames.Core.TYPE_DATEPICKER.equals( type ) && Date.class.isAssignableFrom( valueType ) ) {
           if ( isGenerateDefaultDates() ) {
-            selectionSet.add( new Date() );
+            selectionIndex.add( new Date() );
           }
         }
       }
       if ( Date.class.isAssignableFrom( elementValueType ) ) {
           parameterElement
-             .setAttribute( "timezone-hint", computeTimeZoneHint( parameter, parameterContext, selectionSet ) ); //$NON-NLS-1$
+             .setAttribute( "timezone-hint", computeTimeZoneHint( parameter, parameterContext, selectionIndex ) ); //$NON-NLS-1$
       }
       
-      Encoder enc = org.owasp.esapi.ESAPI.encoder();
-      @SuppressWarnings( "rawtypes" )
-      final LinkedHashSet handledValues = (LinkedHashSet) selectionSet.clone();
+      final ParameterLabelEncoder enc = ParameterLabelEncoder.getInstance();
 
       if ( parameter instanceof ListParameter ) {
         final ListParameter asListParam = (ListParameter) parameter;
@@ -608,6 +487,8 @@ public class ParameterXmlContentHandler {
           final Element valueElement = document.createElement( "value" ); //$NON-NLS-1$
           valuesElement.appendChild( valueElement );
 
+          // the selection index matches the raw key, before any encoding takes place.
+          final Object origKey = key;
           if ( hasISOControlChars( key, elementValueType ) || hasISOControlChars( value, elementValueType ) ) {
             // if either key or value have illegal chars, base64 encode them
             // and set the encoded="true" flag.
@@ -619,20 +500,13 @@ public class ParameterXmlContentHandler {
           valueElement.setAttribute( "label", enc.encodeForHTMLAttribute( String.valueOf( value ) ) ); //$NON-NLS-1$ //$NON-NLS-2$
           valueElement.setAttribute( "type", elementValueType.getName() ); //$NON-NLS-1$
 
-          if ( key instanceof Number ) {
-            final BigDecimal bd = new BigDecimal( String.valueOf( key ) );
-            valueElement.setAttribute( "selected", String.valueOf( selectionSet.contains( bd ) ) ); //$NON-NLS-1$
-            handledValues.remove( bd );
-          } else if ( key == null ) {
-            if ( selections == null || selectionSet.contains( null ) ) {
+          if ( key == null ) {
+            if ( selections == null || selectionIndex.contains( null ) ) {
               valueElement.setAttribute( "selected", "true" ); //$NON-NLS-1$
-              handledValues.remove( null );
+              selectionIndex.markSelected( null );
             }
           } else {
-            // key may have been encoded, we want the original raw value.
-            Object origKey = possibleValues.getKeyValue( i );
-            valueElement.setAttribute( "selected", String.valueOf( selectionSet.contains( origKey ) ) ); //$NON-NLS-1$
-            handledValues.remove( key );
+            valueElement.setAttribute( "selected", String.valueOf( selectionIndex.markSelected( origKey ) ) ); //$NON-NLS-1$
           }
           if ( key == null ) {
             valueElement.setAttribute( "null", "true" ); //$NON-NLS-1$ //$NON-NLS-2$
@@ -646,20 +520,15 @@ public class ParameterXmlContentHandler {
 
         // Only add invalid values to the selection list for non-strict parameters
         if ( !asListParam.isStrictValueCheck() ) {
-          for ( final Object key : handledValues ) {
+          for ( final Object key : selectionIndex.getUnmatchedSelections() ) {
             final Element valueElement = document.createElement( "value" ); //$NON-NLS-1$
             valuesElement.appendChild( valueElement );
 
             valueElement.setAttribute(
                 "label", Messages.getInstance().getString( "ReportPlugin.autoParameter", String.valueOf( key ) ) ); //$NON-NLS-1$ //$NON-NLS-2$
             valueElement.setAttribute( "type", elementValueType.getName() ); //$NON-NLS-1$
-
-            if ( key instanceof Number ) {
-              BigDecimal bd = new BigDecimal( String.valueOf( key ) );
-              valueElement.setAttribute( "selected", String.valueOf( selectionSet.contains( bd ) ) ); //$NON-NLS-1$
-            } else {
-              valueElement.setAttribute( "selected", String.valueOf( selectionSet.contains( key ) ) ); //$NON-NLS-1$
-            }
+            // all remaining values come from the selection, so they are selected by definition.
+            valueElement.setAttribute( "selected", "true" ); //$NON-NLS-1$
 
             if ( key == null ) {
               valueElement.setAttribute( "null", "true" ); //$NON-NLS-1$ //$NON-NLS-2$
@@ -722,19 +591,9 @@ public class ParameterXmlContentHandler {
     return false;
   }
 
-  private Object resolveSelectionValue( Object value ) {
-    // convert all numerics to BigDecimals for cross-numeric-class matching
-    if ( value instanceof Number ) {
-      return new BigDecimal( String.valueOf( value.toString() ) );
-    } else {
-      return value;
-    }
-
-  }
-
   private String computeTimeZoneHint( final ParameterDefinitionEntry parameter,
                                       final ParameterContext parameterContext,
-                                      final LinkedHashSet<Object> selectionSet ) {
+                                      final ParameterSelectionIndex selectionIndex ) {
     // add a timezone hint ..
     final String timezoneSpec =
         parameter.getParameterAttribute( ParameterAttributeNames.Core.NAMESPACE, ParameterAttributeNames.Core.TIMEZONE,
@@ -754,8 +613,8 @@ public class ParameterXmlContentHandler {
       }
 
       final int offset;
-      if ( selectionSet != null && selectionSet.size() > 0 ) {
-        Date date = (Date) selectionSet.iterator().next();
+      if ( selectionIndex != null && selectionIndex.isEmpty() == false ) {
+        Date date = (Date) selectionIndex.getFirstSelection();
         offset = timeZone.getOffset( date.getTime() );
       } else {
         offset = timeZone.getRawOffset();
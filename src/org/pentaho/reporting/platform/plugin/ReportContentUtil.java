@@ -89,8 +89,8 @@ public class ReportContentUtil {
           final Object computedParameter =
               ReportContentUtil.computeParameterValue( context, param, inputs.get( paramName ) );
           parameterValues.put( param.getName(), computedParameter );
-          if ( log.isInfoEnabled() ) {
-            log.info( Messages.getInstance().getString( "ReportPlugin.infoParameterValues", //$NON-NLS-1$
+          if ( log.isDebugEnabled() ) {
+            log.debug( Messages.getInstance().getString( "ReportPlugin.infoParameterValues", //$NON-NLS-1$
                 paramName, String.valueOf( inputs.get( paramName ) ), String.valueOf( computedParameter ) ) );
           }
         } catch ( Exception e ) {
@@ -111,6 +111,12 @@ public class ReportContentUtil {
       return null;
     }
 
+    final ParameterValueConverter converter = new ParameterValueConverter( parameterContext, parameterDefinition );
+    return computeParameterValue( converter, parameterDefinition, value );
+  }
+
+  private static Object computeParameterValue( final ParameterValueConverter converter,
+      final ParameterDefinitionEntry parameterDefinition, final Object value ) throws ReportProcessingException {
     final Class valueType = parameterDefinition.getValueType();
     final boolean allowMultiSelect = isAllowMultiSelect( parameterDefinition );
     if ( allowMultiSelect && Collection.class.isInstance( value ) ) {
@@ -126,7 +132,7 @@ public class ReportContentUtil {
       final Object[] sourceArray = c.toArray();
       final Object array = Array.newInstance( componentType, length );
       for ( int i = 0; i < length; i++ ) {
-        Array.set( array, i, convert( parameterContext, parameterDefinition, componentType, sourceArray[i] ) );
+        Array.set( array, i, converter.convert( componentType, sourceArray[i] ) );
       }
       return array;
     } else if ( value.getClass().isArray() ) {
@@ -140,7 +146,7 @@ public class ReportContentUtil {
       final int length = Array.getLength( value );
       final Object array = Array.newInstance( componentType, length );
       for ( int i = 0; i < length; i++ ) {
-        Array.set( array, i, convert( parameterContext, parameterDefinition, componentType, Array.get( value, i ) ) );
+        Array.set( array, i, converter.convert( componentType, Array.get( value, i ) ) );
       }
       return array;
     } else if ( allowMultiSelect ) {
@@ -148,9 +154,9 @@ public class ReportContentUtil {
       // and re-call addParameter with it
       final Object[] array = new Object[1];
       array[0] = value;
-      return computeParameterValue( parameterContext, parameterDefinition, array );
+      return computeParameterValue( converter, parameterDefinition, array );
     } else {
-      return convert( parameterContext, parameterDefinition, parameterDefinition.getValueType(), value );
+      return converter.convert( parameterDefinition.getValueType(), value );
     }
   }
 
@@ -162,155 +168,218 @@ public class ReportContentUtil {
     return false;
   }
 
-  private static Object convert( final ParameterContext context, final ParameterDefinitionEntry parameter,
-      final Class targetType, final Object rawValue ) throws ReportProcessingException {
-    if ( targetType == null ) {
-      throw new NullPointerException();
-    }
+  /**
+   * Converts raw input values for a single parameter. The parameter's data-format and timezone attributes are
+   * evaluated once and the compiled formats and value-converters are reused for all values of a multi-selection.
+   * <p/>
+   * The formats held here are not thread-safe. An instance must be confined to the computation of a single parameter
+   * value.
+   */
+  private static class ParameterValueConverter {
+    private static final String STRICT_DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS"; // NON-NLS
+    private static final String STRICT_ZONED_DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSZ"; // NON-NLS
+    private static final String ISO_DATE_PATTERN = "yyyy-MM-dd"; // NON-NLS
 
-    if ( rawValue == null ) {
-      return null;
+    private final ParameterContext context;
+    private final ParameterDefinitionEntry parameter;
+
+    private boolean dataFormatResolved;
+    private String dataFormat;
+    private DecimalFormat decimalFormat;
+    private SimpleDateFormat dataDateFormat;
+
+    private boolean timezoneResolved;
+    private String timezoneSpec;
+    private SimpleDateFormat strictDateFormat;
+    private SimpleDateFormat strictZonedDateFormat;
+    private SimpleDateFormat isoDateFormat;
+
+    private Class converterType;
+    private ValueConverter valueConverter;
+
+    private ParameterValueConverter( final ParameterContext context, final ParameterDefinitionEntry parameter ) {
+      this.context = context;
+      this.parameter = parameter;
     }
-    if ( targetType.isInstance( rawValue ) ) {
+
+    public Object convert( final Class targetType, final Object rawValue ) throws ReportProcessingException {
+      if ( targetType == null ) {
+        throw new NullPointerException();
+      }
+
+      if ( rawValue == null ) {
+        return null;
+      }
+      if ( targetType.isInstance( rawValue ) ) {
+        return rawValue;
+      }
+
+      if ( targetType.isAssignableFrom( TableModel.class )
+          && IPentahoResultSet.class.isAssignableFrom( rawValue.getClass() ) ) {
+        // wrap IPentahoResultSet to simulate TableModel
+        return new PentahoTableModel( (IPentahoResultSet) rawValue );
+      }
+
+      final String valueAsString = String.valueOf( rawValue );
+      if ( StringUtils.isEmpty( valueAsString ) ) {
+        // none of the converters accept empty strings as valid input. So we can return null instead.
+        return null;
+      }
+
+      if ( targetType == String.class ) {
+        // fast path: the string converter would just return the string as is.
+        return valueAsString;
+      }
+
+      if ( targetType.equals( Timestamp.class ) ) {
+        try {
+          final Date date = parseDate( valueAsString );
+          return new Timestamp( date.getTime() );
+        } catch ( ParseException pe ) {
+          // ignore, we try to parse it as real date now ..
+          CommonUtil.checkStyleIgnore();
+        }
+      } else if ( targetType.equals( Time.class ) ) {
+        try {
+          final Date date = parseDate( valueAsString );
+          return new Time( date.getTime() );
+        } catch ( ParseException pe ) {
+          // ignore, we try to parse it as real date now ..
+          CommonUtil.checkStyleIgnore();
+        }
+      } else if ( targetType.equals( java.sql.Date.class ) ) {
+        try {
+          final Date date = parseDate( valueAsString );
+          return new java.sql.Date( date.getTime() );
+        } catch ( ParseException pe ) {
+          // ignore, we try to parse it as real date now ..
+          CommonUtil.checkStyleIgnore();
+        }
+      } else if ( targetType.equals( Date.class ) ) {
+        try {
+          final Date date = parseDate( valueAsString );
+          return new Date( date.getTime() );
+        } catch ( ParseException pe ) {
+          // ignore, we try to parse it as real date now ..
+          CommonUtil.checkStyleIgnore();
+        }
+      }
+
+      final String format = getDataFormat();
+      if ( format != null ) {
+        try {
+          if ( Number.class.isAssignableFrom( targetType ) ) {
+            if ( decimalFormat == null ) {
+              decimalFormat = new DecimalFormat( format, new DecimalFormatSymbols( LocaleHelper.getLocale() ) );
+              decimalFormat.setParseBigDecimal( true );
+            }
+            final Number number = decimalFormat.parse( valueAsString );
+            final String asText = ConverterRegistry.toAttributeValue( number );
+            return ConverterRegistry.toPropertyValue( asText, targetType );
+          } else if ( Date.class.isAssignableFrom( targetType ) ) {
+            if ( dataDateFormat == null ) {
+              dataDateFormat =
+                  new SimpleDateFormat( format, new DateFormatSymbols( LocaleHelper.getLocale() ) );
+              dataDateFormat.setLenient( false );
+            }
+            final Date number = dataDateFormat.parse( valueAsString );
+            final String asText = ConverterRegistry.toAttributeValue( number );
+            return ConverterRegistry.toPropertyValue( asText, targetType );
+          }
+        } catch ( Exception e ) {
+          // again, ignore it .
+          CommonUtil.checkStyleIgnore();
+        }
+      }
+
+      final ValueConverter valueConverter = getValueConverter( targetType );
+      if ( valueConverter != null ) {
+        try {
+          return valueConverter.toPropertyValue( valueAsString );
+        } catch ( BeanException e ) {
+          throw new ReportProcessingException( Messages.getInstance().getString(
+              "ReportPlugin.unableToConvertParameter", parameter.getName(), valueAsString ) ); //$NON-NLS-1$
+        }
+      }
       return rawValue;
     }
 
-    if ( targetType.isAssignableFrom( TableModel.class )
-        && IPentahoResultSet.class.isAssignableFrom( rawValue.getClass() ) ) {
-      // wrap IPentahoResultSet to simulate TableModel
-      return new PentahoTableModel( (IPentahoResultSet) rawValue );
+    private String getDataFormat() {
+      if ( dataFormatResolved == false ) {
+        dataFormat =
+            parameter.getParameterAttribute( ParameterAttributeNames.Core.NAMESPACE,
+                ParameterAttributeNames.Core.DATA_FORMAT, context );
+        dataFormatResolved = true;
+      }
+      return dataFormat;
     }
 
-    final String valueAsString = String.valueOf( rawValue );
-    if ( StringUtils.isEmpty( valueAsString ) ) {
-      // none of the converters accept empty strings as valid input. So we can return null instead.
-      return null;
+    private ValueConverter getValueConverter( final Class targetType ) {
+      if ( converterType != targetType ) {
+        valueConverter = ConverterRegistry.getInstance().getValueConverter( targetType );
+        converterType = targetType;
+      }
+      return valueConverter;
     }
 
-    if ( targetType.equals( Timestamp.class ) ) {
-      try {
-        final Date date = parseDate( parameter, context, valueAsString );
-        return new Timestamp( date.getTime() );
-      } catch ( ParseException pe ) {
-        // ignore, we try to parse it as real date now ..
-        CommonUtil.checkStyleIgnore();
-      }
-    } else if ( targetType.equals( Time.class ) ) {
+    private Date parseDate( final String value ) throws ParseException {
       try {
-        final Date date = parseDate( parameter, context, valueAsString );
-        return new Time( date.getTime() );
+        return parseDateStrict( value );
       } catch ( ParseException pe ) {
-        // ignore, we try to parse it as real date now ..
         CommonUtil.checkStyleIgnore();
       }
-    } else if ( targetType.equals( java.sql.Date.class ) ) {
-      try {
-        final Date date = parseDate( parameter, context, valueAsString );
-        return new java.sql.Date( date.getTime() );
-      } catch ( ParseException pe ) {
-        // ignore, we try to parse it as real date now ..
-        CommonUtil.checkStyleIgnore();
-      }
-    } else if ( targetType.equals( Date.class ) ) {
+
       try {
-        final Date date = parseDate( parameter, context, valueAsString );
-        return new Date( date.getTime() );
-      } catch ( ParseException pe ) {
-        // ignore, we try to parse it as real date now ..
+        // parse the legacy format that we used in 3.5.0-GA.
+        final Long dateAsLong = Long.parseLong( value );
+        return new Date( dateAsLong );
+      } catch ( NumberFormatException nfe ) {
+        // ignored
         CommonUtil.checkStyleIgnore();
       }
-    }
 
-    final String dataFormat =
-        parameter.getParameterAttribute( ParameterAttributeNames.Core.NAMESPACE,
-            ParameterAttributeNames.Core.DATA_FORMAT, context );
-    if ( dataFormat != null ) {
       try {
-        if ( Number.class.isAssignableFrom( targetType ) ) {
-          final DecimalFormat format =
-              new DecimalFormat( dataFormat, new DecimalFormatSymbols( LocaleHelper.getLocale() ) );
-          format.setParseBigDecimal( true );
-          final Number number = format.parse( valueAsString );
-          final String asText = ConverterRegistry.toAttributeValue( number );
-          return ConverterRegistry.toPropertyValue( asText, targetType );
-        } else if ( Date.class.isAssignableFrom( targetType ) ) {
-          final SimpleDateFormat format =
-              new SimpleDateFormat( dataFormat, new DateFormatSymbols( LocaleHelper.getLocale() ) );
-          format.setLenient( false );
-          final Date number = format.parse( valueAsString );
-          final String asText = ConverterRegistry.toAttributeValue( number );
-          return ConverterRegistry.toPropertyValue( asText, targetType );
+        if ( isoDateFormat == null ) {
+          isoDateFormat = new SimpleDateFormat( ISO_DATE_PATTERN );
         }
-      } catch ( Exception e ) {
-        // again, ignore it .
+        return isoDateFormat.parse( value );
+      } catch ( ParseException pe ) {
         CommonUtil.checkStyleIgnore();
       }
+      throw new ParseException( "Unable to parse Date", 0 );
     }
 
-    final ValueConverter valueConverter = ConverterRegistry.getInstance().getValueConverter( targetType );
-    if ( valueConverter != null ) {
-      try {
-        return valueConverter.toPropertyValue( valueAsString );
-      } catch ( BeanException e ) {
-        throw new ReportProcessingException( Messages.getInstance().getString(
-            "ReportPlugin.unableToConvertParameter", parameter.getName(), valueAsString ) ); //$NON-NLS-1$
+    private Date parseDateStrict( final String value ) throws ParseException {
+      if ( timezoneResolved == false ) {
+        timezoneSpec =
+            parameter.getParameterAttribute( ParameterAttributeNames.Core.NAMESPACE,
+                ParameterAttributeNames.Core.TIMEZONE, context );
+        timezoneResolved = true;
       }
-    }
-    return rawValue;
-  }
-
-  private static Date parseDate( final ParameterDefinitionEntry parameterEntry, final ParameterContext context,
-      final String value ) throws ParseException {
-    try {
-      return parseDateStrict( parameterEntry, context, value );
-    } catch ( ParseException pe ) {
-      CommonUtil.checkStyleIgnore();
-    }
-
-    try {
-      // parse the legacy format that we used in 3.5.0-GA.
-      final Long dateAsLong = Long.parseLong( value );
-      return new Date( dateAsLong );
-    } catch ( NumberFormatException nfe ) {
-      // ignored
-      CommonUtil.checkStyleIgnore();
-    }
 
-    try {
-      final SimpleDateFormat simpleDateFormat = new SimpleDateFormat( "yyyy-MM-dd" ); // NON-NLS
-      return simpleDateFormat.parse( value );
-    } catch ( ParseException pe ) {
-      CommonUtil.checkStyleIgnore();
-    }
-    throw new ParseException( "Unable to parse Date", 0 );
-  }
+      if ( strictDateFormat == null ) {
+        // a missing timezone or "server" parses in the server's default timezone.
+        strictDateFormat = new SimpleDateFormat( STRICT_DATE_PATTERN );
+        if ( timezoneSpec == null || "server".equals( timezoneSpec ) ) { // NON-NLS
+          return strictDateFormat.parse( value );
+        } else if ( "utc".equals( timezoneSpec ) ) { // NON-NLS
+          strictDateFormat.setTimeZone( TimeZone.getTimeZone( "UTC" ) ); // NON-NLS
+        } else if ( "client".equals( timezoneSpec ) ) { // NON-NLS
+          strictZonedDateFormat = new SimpleDateFormat( STRICT_ZONED_DATE_PATTERN );
+        } else {
+          // this never returns null, but if the timezone is not understood, we end up with GMT/UTC.
+          strictDateFormat.setTimeZone( TimeZone.getTimeZone( timezoneSpec ) );
+        }
+      }
 
-  private static Date parseDateStrict( final ParameterDefinitionEntry parameterEntry, final ParameterContext context,
-      final String value ) throws ParseException {
-    final String timezoneSpec =
-        parameterEntry.getParameterAttribute( ParameterAttributeNames.Core.NAMESPACE,
-            ParameterAttributeNames.Core.TIMEZONE, context );
-    if ( timezoneSpec == null || "server".equals( timezoneSpec ) ) { // NON-NLS
-      final SimpleDateFormat simpleDateFormat = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss.SSS" ); // NON-NLS
-      return simpleDateFormat.parse( value );
-    } else if ( "utc".equals( timezoneSpec ) ) { // NON-NLS
-      final SimpleDateFormat simpleDateFormat = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss.SSS" ); // NON-NLS
-      simpleDateFormat.setTimeZone( TimeZone.getTimeZone( "UTC" ) ); // NON-NLS
-      return simpleDateFormat.parse( value );
-    } else if ( "client".equals( timezoneSpec ) ) { // NON-NLS
-      try {
-        final SimpleDateFormat simpleDateFormat = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss.SSSZ" ); // NON-NLS
-        return simpleDateFormat.parse( value );
-      } catch ( ParseException pe ) {
-        final SimpleDateFormat simpleDateFormat = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss.SSS" ); // NON-NLS
-        return simpleDateFormat.parse( value );
+      if ( strictZonedDateFormat != null ) {
+        try {
+          return strictZonedDateFormat.parse( value );
+        } catch ( ParseException pe ) {
+          return strictDateFormat.parse( value );
+        }
       }
-    } else {
-      final TimeZone timeZone = TimeZone.getTimeZone( timezoneSpec );
-      // this never returns null, but if the timezone is not understood, we end up with GMT/UTC.
-      final SimpleDateFormat simpleDateFormat = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss.SSS" ); // NON-NLS
-      simpleDateFormat.setTimeZone( timeZone );
-      return simpleDateFormat.parse( value );
+      return strictDateFormat.parse( value );
     }
   }
 
@@ -66,6 +66,8 @@ public class ReportingSystemStartupListener implements IPentahoSystemListener {
           if ( ClassicEngineBoot.getInstance().isBootFailed() ) {
             logger.warn( Messages.getInstance().getString( "ReportPlugin.logErrorGeneralBootError" ), ClassicEngineBoot
                 .getInstance().getBootFailureReason() ); //$NON-NLS-1$
+          } else {
+            ReportingWarmUp.getInstance().start();
           }
           return true;
         }
@@ -77,7 +79,7 @@ public class ReportingSystemStartupListener implements IPentahoSystemListener {
   }
 
   public void shutdown() {
-    // Nothing required
+    ReportingWarmUp.getInstance().stop();
   }
 
 }
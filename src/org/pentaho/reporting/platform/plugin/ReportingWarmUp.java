@@ -0,0 +1,238 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.olap4j.OlapConnection;
+import org.pentaho.platform.engine.security.SecurityHelper;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.libraries.base.config.ExtendedConfiguration;
+import org.pentaho.reporting.platform.plugin.connection.PentahoJndiDatasourceConnectionProvider;
+import org.pentaho.reporting.platform.plugin.connection.PentahoOlap4JJndiConnectionProvider;
+import org.pentaho.reporting.platform.plugin.messages.Messages;
+
+/**
+ * Opens connections and parses reports ahead of the first request, so that the first users after a restart do not pay
+ * for connection pool setup, Mondrian schema loading and report parsing. The warm-up runs once, on a background
+ * thread started by the {@link ReportingSystemStartupListener}, and works through these configuration properties
+ * (each a comma-separated list):
+ * <ul>
+ * <li>org.pentaho.reporting.platform.plugin.ReportingWarmUp.JndiNames - JDBC data sources to connect to.</li>
+ * <li>org.pentaho.reporting.platform.plugin.ReportingWarmUp.OlapJndiNames - olap4j data sources to connect to; their
+ * schema is loaded as well.</li>
+ * <li>org.pentaho.reporting.platform.plugin.ReportingWarmUp.Reports - repository paths of reports to parse.</li>
+ * </ul>
+ * Failures are logged and do not stop the remaining steps. {@link #isReady()} reports when all steps are done.
+ */
+public final class ReportingWarmUp implements Runnable {
+  private static final Log logger = LogFactory.getLog( ReportingWarmUp.class );
+
+  private static final String PREFIX = "org.pentaho.reporting.platform.plugin.ReportingWarmUp.";
+  private static final String ENABLED_KEY = PREFIX + "Enabled";
+  private static final String JNDI_NAMES_KEY = PREFIX + "JndiNames";
+  private static final String OLAP_JNDI_NAMES_KEY = PREFIX + "OlapJndiNames";
+  private static final String REPORTS_KEY = PREFIX + "Reports";
+
+  private static final ReportingWarmUp instance = new ReportingWarmUp();
+
+  private final CountDownLatch done;
+  private final AtomicInteger completedSteps;
+  private final AtomicInteger failedSteps;
+  private volatile int totalSteps;
+  private Thread thread;
+
+  private ReportingWarmUp() {
+    done = new CountDownLatch( 1 );
+    completedSteps = new AtomicInteger();
+    failedSteps = new AtomicInteger();
+  }
+
+  public static ReportingWarmUp getInstance() {
+    return instance;
+  }
+
+  /**
+   * Starts the warm-up thread, unless the warm-up is disabled or has been started before. If disabled, the warm-up
+   * counts as finished immediately.
+   */
+  public synchronized void start() {
+    if ( thread != null || isReady() ) {
+      return;
+    }
+    if ( ClassicEngineBoot.getInstance().getExtendedConfig().getBoolProperty( ENABLED_KEY, false ) == false ) {
+      done.countDown();
+      return;
+    }
+
+    thread = new Thread( this, "Reporting warm-up" ); // NON-NLS
+    thread.setDaemon( true );
+    thread.setPriority( Thread.MIN_PRIORITY );
+    thread.start();
+  }
+
+  public synchronized void stop() {
+    if ( thread != null ) {
+      thread.interrupt();
+    }
+  }
+
+  public void run() {
+    try {
+      final ExtendedConfiguration config = ClassicEngineBoot.getInstance().getExtendedConfig();
+      final List<String> jndiNames = parseList( config.getConfigProperty( JNDI_NAMES_KEY ) );
+      final List<String> olapJndiNames = parseList( config.getConfigProperty( OLAP_JNDI_NAMES_KEY ) );
+      final List<String> reports = parseList( config.getConfigProperty( REPORTS_KEY ) );
+      totalSteps = jndiNames.size() + olapJndiNames.size() + reports.size();
+      logger.info( Messages.getInstance().getString( "ReportPlugin.logInfoWarmUpStarted",
+          String.valueOf( totalSteps ) ) ); //$NON-NLS-1$
+
+      final long startTime = System.currentTimeMillis();
+      SecurityHelper.getInstance().runAsSystem( new Callable<Object>() {
+        public Object call() throws Exception {
+          for ( final String jndiName : jndiNames ) {
+            if ( Thread.currentThread().isInterrupted() ) {
+              return null;
+            }
+            runStep( "jdbc:" + jndiName, new Callable<Object>() {
+              public Object call() throws Exception {
+                warmUpJdbc( jndiName );
+                return null;
+              }
+            } );
+          }
+          for ( final String jndiName : olapJndiNames ) {
+            if ( Thread.currentThread().isInterrupted() ) {
+              return null;
+            }
+            runStep( "olap4j:" + jndiName, new Callable<Object>() {
+              public Object call() throws Exception {
+                warmUpOlap( jndiName );
+                return null;
+              }
+            } );
+          }
+          for ( final String report : reports ) {
+            if ( Thread.currentThread().isInterrupted() ) {
+              return null;
+            }
+            runStep( report, new Callable<Object>() {
+              public Object call() throws Exception {
+                ReportCreator.createReportByName( report );
+                return null;
+              }
+            } );
+          }
+          return null;
+        }
+      } );
+
+      logger.info( Messages.getInstance().getString( "ReportPlugin.logInfoWarmUpFinished",
+          String.valueOf( completedSteps.get() ), String.valueOf( failedSteps.get() ),
+          String.valueOf( System.currentTimeMillis() - startTime ) ) ); //$NON-NLS-1$
+    } catch ( Exception e ) {
+      logger.warn( Messages.getInstance().getString( "ReportPlugin.logWarnWarmUpFailed" ), e ); //$NON-NLS-1$
+    } finally {
+      done.countDown();
+    }
+  }
+
+  private void runStep( final String name, final Callable<Object> step ) {
+    final long startTime = System.currentTimeMillis();
+    try {
+      step.call();
+      completedSteps.incrementAndGet();
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Warm-up of " + name + " took " + ( System.currentTimeMillis() - startTime ) + "ms" ); // NON-NLS
+      }
+    } catch ( Exception e ) {
+      failedSteps.incrementAndGet();
+      logger.warn( Messages.getInstance().getString( "ReportPlugin.logWarnWarmUpStepFailed", name ), e ); //$NON-NLS-1$
+    }
+  }
+
+  private static void warmUpJdbc( final String jndiName ) throws SQLException {
+    final PentahoJndiDatasourceConnectionProvider provider = new PentahoJndiDatasourceConnectionProvider();
+    provider.setJndiName( jndiName );
+    final Connection connection = provider.createConnection( null, null );
+    connection.close();
+  }
+
+  private static void warmUpOlap( final String jndiName ) throws SQLException {
+    final PentahoOlap4JJndiConnectionProvider provider = new PentahoOlap4JJndiConnectionProvider();
+    provider.setJndiName( jndiName );
+    final OlapConnection connection = provider.createConnection( null, null );
+    try {
+      // loads the schema into the OLAP server's schema cache
+      connection.getOlapSchema();
+    } finally {
+      connection.close();
+    }
+  }
+
+  private static List<String> parseList( final String value ) {
+    final List<String> result = new ArrayList<String>();
+    if ( value == null ) {
+      return result;
+    }
+    for ( final String item : value.split( "," ) ) {
+      final String trimmed = item.trim();
+      if ( trimmed.length() > 0 ) {
+        result.add( trimmed );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return true once the warm-up has finished, failed, or has been disabled.
+   */
+  public boolean isReady() {
+    return done.getCount() == 0;
+  }
+
+  /**
+   * Waits for the warm-up to finish.
+   *
+   * @return true if the warm-up has finished within the given time.
+   */
+  public boolean awaitReady( final long timeout, final TimeUnit unit ) throws InterruptedException {
+    return done.await( timeout, unit );
+  }
+
+  public int getTotalSteps() {
+    return totalSteps;
+  }
+
+  public int getCompletedSteps() {
+    return completedSteps.get();
+  }
+
+  public int getFailedSteps() {
+    return failedSteps.get();
+  }
+}
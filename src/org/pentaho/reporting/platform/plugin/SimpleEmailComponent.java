@@ -20,6 +20,7 @@ package org.pentaho.reporting.platform.plugin;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -49,6 +50,7 @@ import org.pentaho.platform.api.engine.IAcceptsRuntimeInputs;
 import org.pentaho.platform.api.repository.IContentItem;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.util.messages.LocaleHelper;
+import org.pentaho.reporting.libraries.base.util.IOUtils;
 import org.pentaho.reporting.platform.plugin.messages.Messages;
 
 /**
@@ -213,6 +215,26 @@ public class SimpleEmailComponent implements IAcceptsRuntimeInputs {
   }
 
   private IContentItem attachmentContent3;
+  private final List<MimeBodyPart> additionalAttachments = new ArrayList<MimeBodyPart>();
+
+  /**
+   * Adds an attachment from content that is already held in memory, such as a report generated for this email.
+   * 
+   * @param name
+   *          the file name of the attachment.
+   * @param mimeType
+   *          the mime-type of the attachment.
+   * @param data
+   *          the content of the attachment.
+   * @throws MessagingException
+   *           if the attachment could not be created.
+   */
+  public void addAttachment( final String name, final String mimeType, final byte[] data ) throws MessagingException {
+    final MimeBodyPart attachmentBodyPart = new MimeBodyPart();
+    attachmentBodyPart.setDataHandler( new DataHandler( new ByteArrayDataSource( data, mimeType ) ) );
+    attachmentBodyPart.setFileName( name );
+    additionalAttachments.add( attachmentBodyPart );
+  }
 
   /**
    * Sets the mime-type for determining which report output type to generate. This should be a mime-type for consistency
@@ -338,24 +360,8 @@ public class SimpleEmailComponent implements IAcceptsRuntimeInputs {
       // Get the session object
       final Session session = buildSession();
 
-      // Create the message
-      final MimeMessage msg = new MimeMessage( session );
-
-      // From, to, etc.
-      applyMessageHeaders( msg );
-
-      // Get main message multipart
-      final Multipart multipartBody = getMultipartBody( session );
-
-      // Process attachments
-      final Multipart mainMultiPart = processAttachments( multipartBody );
-      msg.setContent( mainMultiPart );
-
-      // Send it
-
-      msg.setHeader( "X-Mailer", MAILER ); //$NON-NLS-1$
-      msg.setSentDate( new Date() );
-
+      // Create the message and send it
+      final MimeMessage msg = createMessage( session );
       Transport.send( msg );
 
       return true;
@@ -369,6 +375,37 @@ public class SimpleEmailComponent implements IAcceptsRuntimeInputs {
 
   }
 
+  /**
+   * Builds the message described by this component without sending it. This is used by {@link #execute()} and by the
+   * {@link EmailBurstSender}, which sends many messages over one connection.
+   * 
+   * @param session
+   *          the mail session the message belongs to.
+   * @return the complete message.
+   * @throws Exception
+   *           if the message could not be built.
+   */
+  public MimeMessage createMessage( final Session session ) throws Exception {
+
+    final MimeMessage msg = new MimeMessage( session );
+
+    // From, to, etc.
+    applyMessageHeaders( msg );
+
+    // Get main message multipart
+    final Multipart multipartBody = getMultipartBody( session );
+
+    // Process attachments
+    final Multipart mainMultiPart = processAttachments( multipartBody );
+    msg.setContent( mainMultiPart );
+
+    msg.setHeader( "X-Mailer", MAILER ); //$NON-NLS-1$
+    msg.setSentDate( new Date() );
+
+    return msg;
+
+  }
+
   private Multipart getMultipartBody( final Session session ) throws MessagingException, IOException {
 
     // if we have a mimeMessage, use it. Otherwise, build one with what we have
@@ -442,13 +479,13 @@ public class SimpleEmailComponent implements IAcceptsRuntimeInputs {
       final InputStream in = ( (IContentItem) param ).getInputStream();
       // Convert to String
       final ByteArrayOutputStream out = new ByteArrayOutputStream();
-
-      int nextChar;
-      while ( ( nextChar = in.read() ) != -1 ) {
-        out.write( nextChar );
+      try {
+        IOUtils.getInstance().copyStreams( in, out );
+      } finally {
+        in.close();
       }
 
-      return new String( out.toString( LocaleHelper.getSystemEncoding() ) );
+      return out.toString( LocaleHelper.getSystemEncoding() );
 
     }
 
@@ -458,7 +495,7 @@ public class SimpleEmailComponent implements IAcceptsRuntimeInputs {
 
   private Multipart processAttachments( final Multipart multipartBody ) throws MessagingException, IOException {
 
-    if ( getAttachmentContent() == null ) {
+    if ( getAttachmentContent() == null && additionalAttachments.isEmpty() ) {
 
       // We don't have a first attachment, won't even search for the others.
       return multipartBody;
@@ -478,6 +515,9 @@ public class SimpleEmailComponent implements IAcceptsRuntimeInputs {
     processSpecificAttachment( mixedMultipart, getAttachmentContent() );
     processSpecificAttachment( mixedMultipart, getAttachmentContent2() );
     processSpecificAttachment( mixedMultipart, getAttachmentContent3() );
+    for ( final MimeBodyPart attachmentBodyPart : additionalAttachments ) {
+      mixedMultipart.addBodyPart( attachmentBodyPart );
+    }
 
     return mixedMultipart;
 
@@ -519,7 +559,16 @@ public class SimpleEmailComponent implements IAcceptsRuntimeInputs {
 
   }
 
-  private Session buildSession() throws Exception {
+  static Session buildSession() throws Exception {
+    return buildSession( true );
+  }
+
+  /**
+   * @param debugByDefault
+   *          whether the session logs the SMTP conversation if <code>mail.debug</code> is not configured. Bulk senders
+   *          pass false, as the log would contain every message including its attachments.
+   */
+  static Session buildSession( final boolean debugByDefault ) throws Exception {
 
     final Properties props = new Properties();
 
@@ -554,7 +603,7 @@ public class SimpleEmailComponent implements IAcceptsRuntimeInputs {
     // if debugging is not set in the email config file, match the
     // component debug setting
     if ( !props.containsKey( "mail.debug" ) ) { //$NON-NLS-1$
-      session.setDebug( true );
+      session.setDebug( debugByDefault );
     }
 
     return session;
@@ -20,11 +20,15 @@ package org.pentaho.reporting.platform.plugin;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Array;
 import java.net.URL;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import javax.print.DocFlavor;
 import javax.print.PrintService;
 import javax.print.PrintServiceLookup;
@@ -37,6 +41,7 @@ import org.pentaho.platform.api.action.IVarArgsAction;
 import org.pentaho.platform.api.engine.IActionSequenceResource;
 import org.pentaho.platform.api.engine.IPluginManager;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.repository2.unified.fileio.RepositoryFileOutputStream;
 import org.pentaho.reporting.engine.classic.core.AttributeNames;
 import org.pentaho.reporting.engine.classic.core.MasterReport;
 import org.pentaho.reporting.engine.classic.core.metadata.ReportProcessTaskRegistry;
@@ -56,6 +61,7 @@ import org.pentaho.reporting.engine.classic.core.parameters.ValidationResult;
 import org.pentaho.reporting.engine.classic.core.util.ReportParameterValues;
 import org.pentaho.reporting.engine.classic.extensions.modules.java14print.Java14PrintUtil;
 import org.pentaho.reporting.libraries.base.util.CSVQuoter;
+import org.pentaho.reporting.libraries.base.util.IOUtils;
 import org.pentaho.reporting.libraries.base.util.StringUtils;
 import org.pentaho.reporting.libraries.resourceloader.ResourceException;
 import org.pentaho.reporting.platform.plugin.cache.DefaultReportCache;
@@ -63,10 +69,14 @@ import org.pentaho.reporting.platform.plugin.cache.NullReportCache;
 import org.pentaho.reporting.platform.plugin.cache.ReportCache;
 import org.pentaho.reporting.platform.plugin.cache.ReportCacheKey;
 import org.pentaho.reporting.platform.plugin.messages.Messages;
+import org.pentaho.reporting.platform.plugin.output.BurstTarget;
 import org.pentaho.reporting.platform.plugin.output.FastExportReportOutputHandlerFactory;
+import org.pentaho.reporting.platform.plugin.output.MultiFormatExporter;
+import org.pentaho.reporting.platform.plugin.output.ReportBurster;
 import org.pentaho.reporting.platform.plugin.output.ReportOutputHandler;
 import org.pentaho.reporting.platform.plugin.output.ReportOutputHandlerFactory;
 import org.pentaho.reporting.platform.plugin.output.ReportOutputHandlerSelector;
+import org.pentaho.reporting.platform.plugin.output.RepositoryBurstTarget;
 
 public class SimpleReportingAction implements IStreamProcessingAction, IStreamingAction, IVarArgsAction {
 
@@ -133,6 +143,10 @@ public class SimpleReportingAction implements IStreamProcessingAction, IStreamin
   private boolean dashboardMode;
   private Boolean useJcr;
   private String jcrOutputPath;
+  private String burstKey;
+  private String burstOutputFolder;
+  private String additionalOutputTargets;
+  private String additionalOutputFolder;
 
   /*
    * These fields are for enabling printing
@@ -300,6 +314,73 @@ public class SimpleReportingAction implements IStreamProcessingAction, IStreamin
     this.jcrOutputPath = jcrOutputPath;
   }
 
+  public String getBurstKey() {
+    return burstKey;
+  }
+
+  /**
+   * Sets the column of the report's query that the output is burst by. If set, the action stores one file per value
+   * of that column in the burst output folder instead of writing the report to the output stream.
+   *
+   * @param burstKey
+   *          the name of the column, or null to generate a single output.
+   */
+  public void setBurstKey( final String burstKey ) {
+    this.burstKey = burstKey;
+  }
+
+  public String getBurstOutputFolder() {
+    return burstOutputFolder;
+  }
+
+  /**
+   * Sets the repository folder that receives the files of a burst.
+   *
+   * @param burstOutputFolder
+   *          the repository path of the folder.
+   */
+  public void setBurstOutputFolder( final String burstOutputFolder ) {
+    this.burstOutputFolder = burstOutputFolder;
+  }
+
+  private boolean isBurst() {
+    return StringUtils.isEmpty( burstKey ) == false;
+  }
+
+  public String getAdditionalOutputTargets() {
+    return additionalOutputTargets;
+  }
+
+  /**
+   * Sets further output targets that are generated along with the main output target. The report's query runs only
+   * once for all of them; the main output is written to the output stream, the additional outputs are stored as files
+   * in the additional output folder.
+   *
+   * @param additionalOutputTargets
+   *          a comma separated list of output targets, or null to generate the main output only.
+   */
+  public void setAdditionalOutputTargets( final String additionalOutputTargets ) {
+    this.additionalOutputTargets = additionalOutputTargets;
+  }
+
+  public String getAdditionalOutputFolder() {
+    return additionalOutputFolder;
+  }
+
+  /**
+   * Sets the repository folder that receives the files of the additional output targets.
+   *
+   * @param additionalOutputFolder
+   *          the repository path of the folder.
+   */
+  public void setAdditionalOutputFolder( final String additionalOutputFolder ) {
+    this.additionalOutputFolder = additionalOutputFolder;
+  }
+
+  private boolean hasAdditionalOutputs() {
+    return StringUtils.isEmpty( additionalOutputTargets ) == false;
+  }
+
   public String getMimeType( String ignored ) {
     return getMimeType();
   }
@@ -311,6 +392,10 @@ public class SimpleReportingAction implements IStreamProcessingAction, IStreamin
    * @see SimpleReportingComponent#computeEffectiveOutputTarget()
    */
   public String getMimeType() {
+    if ( isBurst() ) {
+      // the streamed output of a burst is the index of the generated files
+      return MIME_TYPE_TXT;
+    }
     try {
       final String outputTarget = computeEffectiveOutputTarget();
       if ( log.isDebugEnabled() ) {
@@ -756,8 +841,8 @@ public class SimpleReportingAction implements IStreamProcessingAction, IStreamin
           final Object computedParameter =
               ReportContentUtil.computeParameterValue( context, param, inputs.get( paramName ) );
           parameterValues.put( param.getName(), computedParameter );
-          if ( log.isInfoEnabled() ) {
-            log.info( Messages.getInstance().getString( "ReportPlugin.infoParameterValues", paramName,
+          if ( log.isDebugEnabled() ) {
+            log.debug( Messages.getInstance().getString( "ReportPlugin.infoParameterValues", paramName,
                 String.valueOf( inputs.get( paramName ) ), String.valueOf( computedParameter ) ) );
           }
         } catch ( Exception e ) {
@@ -823,7 +908,15 @@ public class SimpleReportingAction implements IStreamProcessingAction, IStreamin
       log.error( Messages.getInstance().getString( "ReportPlugin.reportDefinitionNotProvided" ) ); //$NON-NLS-1$
       return false;
     }
-    if ( outputStream == null && print == false ) {
+    if ( isBurst() && StringUtils.isEmpty( burstOutputFolder ) ) {
+      log.error( Messages.getInstance().getString( "ReportPlugin.burstOutputFolderRequired" ) ); //$NON-NLS-1$
+      return false;
+    }
+    if ( hasAdditionalOutputs() && isBurst() == false && StringUtils.isEmpty( additionalOutputFolder ) ) {
+      log.error( Messages.getInstance().getString( "ReportPlugin.additionalOutputFolderRequired" ) ); //$NON-NLS-1$
+      return false;
+    }
+    if ( outputStream == null && print == false && isBurst() == false ) {
       log.error( Messages.getInstance().getString( "ReportPlugin.outputStreamRequired" ) ); //$NON-NLS-1$
       return false;
     }
@@ -905,6 +998,13 @@ public class SimpleReportingAction implements IStreamProcessingAction, IStreamin
       }
 
       final String outputType = computeEffectiveOutputTarget();
+      if ( isBurst() ) {
+        return burst( report, outputType );
+      }
+      if ( hasAdditionalOutputs() ) {
+        return exportMultipleFormats( report, outputType );
+      }
+
       final ReportOutputHandler reportOutputHandler = createOutputHandlerForOutputType( outputType );
       if ( reportOutputHandler == null ) {
         log.warn( Messages.getInstance().getString( "ReportPlugin.warnUnprocessableRequest", outputType ) );
@@ -925,6 +1025,108 @@ public class SimpleReportingAction implements IStreamProcessingAction, IStreamin
     return false;
   }
 
+  /**
+   * Generates one file per value of the burst key into the burst output folder. The report's query runs only once for
+   * all files. The output stream, if any, receives a plain text index of the generated files and failed partitions.
+   *
+   * @return true if all files have been generated.
+   */
+  private boolean burst( final MasterReport report, final String outputType ) throws Exception {
+    final ReportBurster burster = new ReportBurster( report, burstKey, outputType );
+    burster.setYieldRate( getYieldRate() );
+    final RepositoryBurstTarget target = new RepositoryBurstTarget( burstOutputFolder, computeBaseName() );
+    final ReportBurster.Result result = burster.burst( target );
+    log.info( Messages.getInstance().getString( "ReportPlugin.logInfoBurstFinished", //$NON-NLS-1$
+        String.valueOf( result.getSuccessCount() ), String.valueOf( result.getFailures().size() ),
+        String.valueOf( result.getDuration() ) ) );
+
+    if ( outputStream != null ) {
+      final Writer writer = new OutputStreamWriter( outputStream, "UTF-8" ); //$NON-NLS-1$
+      for ( final Object key : result.getPartitionKeys() ) {
+        final Throwable failure = result.getFailures().get( key );
+        if ( failure == null ) {
+          writer.write( key + "\t" + target.getFilePath( key ) + "\n" ); //$NON-NLS-1$ //$NON-NLS-2$
+        } else {
+          writer.write( key + "\tFAILED: " + failure.getMessage() + "\n" ); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+      }
+      writer.flush();
+    }
+    return result.getFailures().isEmpty();
+  }
+
+  /**
+   * Generates the main output and all additional outputs from a single execution of the report's query. The main
+   * output is written to the output stream, the additional outputs are stored in the additional output folder.
+   *
+   * @return true if the main output has been generated. Failed additional outputs are logged only.
+   */
+  private boolean exportMultipleFormats( final MasterReport report, final String outputType ) throws Exception {
+    final MultiFormatExporter exporter = new MultiFormatExporter( report );
+    exporter.setYieldRate( getYieldRate() );
+    exporter.addOutputType( outputType );
+    for ( final String item : additionalOutputTargets.split( "," ) ) { //$NON-NLS-1$
+      final String additionalOutputType = item.trim();
+      if ( additionalOutputType.length() > 0 && exporter.getOutputTypes().contains( additionalOutputType ) == false ) {
+        exporter.addOutputType( additionalOutputType );
+      }
+    }
+
+    final Map<String, Throwable> failures =
+        exporter.export( new MultiFormatTarget( outputType, additionalOutputFolder, computeBaseName() ) );
+    log.info( Messages.getInstance().getString( "ReportPlugin.logInfoMultiFormatFinished", //$NON-NLS-1$
+        String.valueOf( exporter.getOutputTypes().size() - failures.size() ), String.valueOf( failures.size() ) ) );
+    return failures.containsKey( outputType ) == false;
+  }
+
+  private String computeBaseName() {
+    if ( StringUtils.isEmpty( reportDefinitionPath ) ) {
+      return "report"; //$NON-NLS-1$
+    }
+    return IOUtils.getInstance().stripFileExtension( IOUtils.getInstance().getFileName( reportDefinitionPath ) );
+  }
+
+  /**
+   * Writes the main output to the action's output stream and stores every other output as a repository file named
+   * after the report.
+   */
+  private class MultiFormatTarget implements BurstTarget {
+    private final String mainOutputType;
+    private final String folderPath;
+    private final String baseName;
+    private final Set<String> usedFileNames;
+
+    private MultiFormatTarget( final String mainOutputType, final String folderPath, final String baseName ) {
+      this.mainOutputType = mainOutputType;
+      this.folderPath = folderPath;
+      this.baseName = baseName;
+      this.usedFileNames = new HashSet<String>();
+    }
+
+    public OutputStream openPartition( final Object outputType, final String mimeType ) throws IOException {
+      if ( mainOutputType.equals( outputType ) ) {
+        return outputStream;
+      }
+      final String extension = RepositoryBurstTarget.computeExtension( mimeType );
+      String fileName = baseName + extension;
+      for ( int suffix = 2; usedFileNames.add( fileName ) == false; suffix++ ) {
+        fileName = baseName + "-" + suffix + extension; //$NON-NLS-1$
+      }
+      return new RepositoryFileOutputStream( folderPath + "/" + fileName ); //$NON-NLS-1$
+    }
+
+    public void closePartition( final Object outputType, final String mimeType, final OutputStream stream,
+                                final boolean successful ) throws IOException {
+      // the action's output stream belongs to the caller; a repository file is created when its stream is closed
+      if ( successful && mainOutputType.equals( outputType ) == false ) {
+        stream.close();
+      }
+    }
+
+    public void close() {
+    }
+  }
+
   protected ReportOutputHandler createOutputHandlerForOutputType( final String outputType ) throws IOException {
     if ( inputs == null ) {
       throw new IllegalStateException( "Inputs are null, this component did not validate properly" );
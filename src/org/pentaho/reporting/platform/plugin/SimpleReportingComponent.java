@@ -60,6 +60,7 @@ import org.pentaho.reporting.libraries.xmlns.common.ParserUtil;
 import org.pentaho.reporting.platform.plugin.cache.NullReportCache;
 import org.pentaho.reporting.platform.plugin.cache.ReportCache;
 import org.pentaho.reporting.platform.plugin.cache.ReportCacheKey;
+import org.pentaho.reporting.platform.plugin.connection.ReportConnectionBroker;
 import org.pentaho.reporting.platform.plugin.messages.Messages;
 import org.pentaho.reporting.platform.plugin.output.FastExportReportOutputHandlerFactory;
 import org.pentaho.reporting.platform.plugin.output.ReportOutputHandler;
@@ -99,6 +100,8 @@ public class SimpleReportingComponent implements IStreamingPojo, IAcceptsRuntime
   public static final String PRINTER_NAME = "printer-name"; //$NON-NLS-1$
   public static final String DASHBOARD_MODE = "dashboard-mode"; //$NON-NLS-1$
   private static final String MIME_GENERIC_FALLBACK = "application/octet-stream"; //$NON-NLS-1$
+  private static final String SHARE_DATA_KEY =
+      "org.pentaho.reporting.platform.plugin.SimpleReportingComponent.ShareDataWithinViewerSession"; //$NON-NLS-1$
   public static final String PNG_EXPORT_TYPE = "pageable/X-AWT-Graphics;image-type=png";
 
   /**
@@ -943,11 +946,13 @@ public class SimpleReportingComponent implements IStreamingPojo, IAcceptsRuntime
         return false;
       }
       synchronized ( reportOutputHandler.getReportLock() ) {
+        ReportConnectionBroker.begin( report );
         try {
           pageCount = reportOutputHandler.generate( report, acceptedPage, outputStream, getYieldRate() );
           return pageCount != -1;
         } finally {
           reportOutputHandler.close();
+          ReportConnectionBroker.end();
         }
       }
     } catch ( Throwable t ) {
@@ -962,6 +967,8 @@ public class SimpleReportingComponent implements IStreamingPojo, IAcceptsRuntime
       throw new IllegalStateException( "Inputs are null, this component did not validate properly" );
     }
 
+    shareDataWithinViewerSession();
+
     final Object attribute =
         report.getAttribute( AttributeNames.Pentaho.NAMESPACE, AttributeNames.Pentaho.REPORT_CACHE );
     final ReportCacheKey reportCacheKey = new ReportCacheKey( getViewerSessionId(), inputs );
@@ -1027,10 +1034,12 @@ public class SimpleReportingComponent implements IStreamingPojo, IAcceptsRuntime
         return 0;
       }
       synchronized ( reportOutputHandler.getReportLock() ) {
+        ReportConnectionBroker.begin( report );
         try {
           return reportOutputHandler.paginate( report, getYieldRate() );
         } finally {
           reportOutputHandler.close();
+          ReportConnectionBroker.end();
         }
       }
     } catch ( Throwable t ) {
@@ -1040,6 +1049,26 @@ public class SimpleReportingComponent implements IStreamingPojo, IAcceptsRuntime
     return 0;
   }
 
+  /**
+   * Output handlers are cached per output type, so switching from the paginated HTML view to an export starts a new
+   * processing run. Such runs can still skip query execution: when enabled, requests that belong to a viewer session
+   * use the data cache, so an export with the same parameters reuses the query results of the view. The data cache is
+   * scoped to the user session rather than to the viewer, so other viewer tabs of the same user may see the cached
+   * results as well; for that reason this is off by default. Pagination state cannot be shared between output types,
+   * as each output type lays out pages with its own font metrics.
+   */
+  private void shareDataWithinViewerSession() {
+    if ( getViewerSessionId() == null ) {
+      return;
+    }
+    if ( "true".equals( report.getReportConfiguration().getConfigProperty( SHARE_DATA_KEY, "false" ) ) == false ) {
+      return;
+    }
+    if ( report.getAttribute( AttributeNames.Core.NAMESPACE, AttributeNames.Core.DATA_CACHE ) == null ) {
+      report.setAttribute( AttributeNames.Core.NAMESPACE, AttributeNames.Core.DATA_CACHE, Boolean.TRUE );
+    }
+  }
+
   protected String getViewerSessionId() {
     if ( inputs == null ) {
       return null;
@@ -39,14 +39,77 @@ import org.pentaho.reporting.libraries.base.util.MemoryByteArrayOutputStream;
 public class StagingHandler {
   private static final Log logger = LogFactory.getLog( StagingHandler.class );
 
+  /**
+   * Holds back the first bytes written in THRU mode. As long as nothing has been passed on to the destination, the
+   * response is still untouched and errors can be reported properly; once the threshold is exceeded, everything is
+   * passed through. Flushing does not pass the held-back bytes on.
+   */
+  private static class DeferredOutputStream extends OutputStream {
+    private final OutputStream destination;
+    private final int threshold;
+    private MemoryByteArrayOutputStream buffer;
+
+    private DeferredOutputStream( final OutputStream destination, final int threshold ) {
+      this.destination = destination;
+      this.threshold = threshold;
+      this.buffer = new MemoryByteArrayOutputStream();
+    }
+
+    public boolean isCommitted() {
+      return buffer == null;
+    }
+
+    public void write( final int b ) throws IOException {
+      write( new byte[] { (byte) b }, 0, 1 );
+    }
+
+    public void write( final byte[] b, final int off, final int len ) throws IOException {
+      if ( buffer == null ) {
+        destination.write( b, off, len );
+        return;
+      }
+
+      buffer.write( b, off, len );
+      if ( buffer.getLength() > threshold ) {
+        commit();
+      }
+    }
+
+    public void flush() throws IOException {
+      if ( buffer == null ) {
+        destination.flush();
+      }
+    }
+
+    public void commit() throws IOException {
+      if ( buffer == null ) {
+        return;
+      }
+      destination.write( buffer.getRaw(), 0, buffer.getLength() );
+      buffer = null;
+      destination.flush();
+    }
+  }
+
   private OutputStream destination;
   private TrackingOutputStream stagingStream;
+  private DeferredOutputStream deferredStream;
   private File tmpFile;
   private StagingMode mode;
   private IPentahoSession userSession;
 
   public StagingHandler( final OutputStream outputStream, final StagingMode stagingMode,
       final IPentahoSession userSession ) throws IOException {
+    this( outputStream, stagingMode, userSession, 0 );
+  }
+
+  /**
+   * Creates a staging handler that, in THRU mode, holds back the first <code>thruThreshold</code> bytes. This allows
+   * documents like PDF to be streamed to the client as they are produced, while failures that happen early (which
+   * is where almost all of them happen) can still be answered with a proper error response.
+   */
+  public StagingHandler( final OutputStream outputStream, final StagingMode stagingMode,
+      final IPentahoSession userSession, final int thruThreshold ) throws IOException {
     if ( outputStream == null ) {
       throw new NullPointerException();
     }
@@ -56,7 +119,7 @@ public class StagingHandler {
 
     this.userSession = userSession;
     this.destination = outputStream;
-    initialize( stagingMode );
+    initialize( stagingMode, thruThreshold );
   }
 
   public StagingMode getStagingMode() {
@@ -68,14 +131,16 @@ public class StagingHandler {
   }
 
   public boolean canSendHeaders() {
-    if ( ( mode == StagingMode.THRU ) && ( getWrittenByteCount() > 0 ) ) {
-      return false;
-    } else {
+    if ( mode != StagingMode.THRU ) {
       return true;
     }
+    if ( deferredStream != null ) {
+      return deferredStream.isCommitted() == false;
+    }
+    return getWrittenByteCount() == 0;
   }
 
-  private void initialize( final StagingMode mode ) throws IOException {
+  private void initialize( final StagingMode mode, final int thruThreshold ) throws IOException {
     this.mode = mode;
     logger.trace( "Staging mode set - " + mode ); //$NON-NLS-1$
     if ( mode == StagingMode.MEMORY ) {
@@ -103,6 +168,9 @@ public class StagingHandler {
       }
 
       createTrackingProxy( new BufferedOutputStream( new FileOutputStream( tmpFile ) ) );
+    } else if ( thruThreshold > 0 ) {
+      deferredStream = new DeferredOutputStream( destination, thruThreshold );
+      createTrackingProxy( deferredStream );
     } else {
       createTrackingProxy( destination );
     }
@@ -132,8 +200,11 @@ public class StagingHandler {
       } finally {
         IOUtils.closeQuietly( bis );
       }
+    } else if ( deferredStream != null ) {
+      // small documents never exceed the threshold
+      deferredStream.commit();
     }
-    // Nothing to do for THRU - the output already has it's stuff
+    // Nothing else to do for THRU - the output already has it's stuff
 
     close();
 
@@ -18,15 +18,25 @@
 package org.pentaho.reporting.platform.plugin.connection;
 
 import java.io.*;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URLDecoder;
 import java.security.Principal;
 import java.util.*;
 import java.util.Map.Entry;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.IParameterProvider;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IPluginManager;
+import org.pentaho.platform.api.engine.IPluginManagerListener;
 
 import org.pentaho.platform.engine.core.solution.SimpleParameterProvider;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
@@ -52,6 +62,93 @@ import javax.servlet.http.HttpSession;
  */
 
 public class CdaPluginLocalQueryBackend extends CdaQueryBackend {
+  /**
+   * The size of the pipe between CDA and the response parser. CDA blocks when the parser falls behind, so this is all
+   * the unparsed response data held in memory at any time.
+   */
+  private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+  private static final ExecutorService PARSER_EXECUTOR = Executors.newCachedThreadPool( new ThreadFactory() {
+    public Thread newThread( final Runnable r ) {
+      final Thread thread = new Thread( r, "CDA response parser" ); // NON-NLS
+      thread.setDaemon( true );
+      return thread;
+    }
+  } );
+
+  /**
+   * Parses the CDA response while it is written by the plugin. The parser owns the input side of the pipe and closes
+   * it when done, so that CDA fails fast instead of blocking if the parser stops early.
+   */
+  private static class ResponseParserTask implements Callable<TypedTableModel> {
+    private final InputStream inputStream;
+    private volatile Exception failure;
+
+    private ResponseParserTask( final InputStream inputStream ) {
+      this.inputStream = inputStream;
+    }
+
+    public TypedTableModel call() throws Exception {
+      try {
+        return CdaResponseParser.performParse( inputStream );
+      } catch ( Exception e ) {
+        // recorded before the pipe is closed, so that it is visible once CDA fails on the closed pipe
+        failure = e;
+        throw e;
+      } finally {
+        inputStream.close();
+      }
+    }
+
+    /**
+     * @return the exception the parser failed with, or <code>null</code> if it has not failed (yet).
+     */
+    public Exception getFailure() {
+      return failure;
+    }
+  }
+
+  /**
+   * The CDA bean and the reflectively resolved methods we call on it.
+   */
+  private static class CdaApi {
+    private final Object bean;
+    private final Method listParameters;
+    private final Method doQueryPost;
+
+    private CdaApi( final Object bean ) throws NoSuchMethodException {
+      this.bean = bean;
+      final Class cdaBeanClass = bean.getClass();
+      this.listParameters = cdaBeanClass.getMethod( "listParameters", String.class, String.class, String.class,
+          String.class, String.class, HttpServletResponse.class, HttpServletRequest.class );
+      this.doQueryPost = cdaBeanClass.getMethod( "doQueryPost", String.class, String.class, int.class,
+          String.class, Boolean.class, Boolean.class, int.class, int.class, Boolean.class,
+          List.class, HttpServletResponse.class, HttpServletRequest.class );
+    }
+
+    public Object getBean() {
+      return bean;
+    }
+
+    public Method getListParameters() {
+      return listParameters;
+    }
+
+    public Method getDoQueryPost() {
+      return doQueryPost;
+    }
+  }
+
+  private static final Log logger = LogFactory.getLog( CdaPluginLocalQueryBackend.class );
+
+  /**
+   * The local request carries no state, so all calls share one instance.
+   */
+  private static final HttpServletRequest LOCAL_REQUEST = getRequest();
+
+  private static CdaApi cdaApi;
+  private static boolean pluginListenerRegistered;
+
   public CdaPluginLocalQueryBackend() {
   }
 
@@ -70,40 +167,60 @@ public class CdaPluginLocalQueryBackend extends CdaQueryBackend {
       parameters.put( "path", encodeParameter( getPath() ) );
       parameters.put( "file", encodeParameter( getFile() ) );
 
-      final String responseBody = callPlugin( "cda", method, new SimpleParameterProvider( parameters ) );
-
-      // convert String into InputStream
-      final InputStream responseBodyIs = new ByteArrayInputStream( responseBody.getBytes( "UTF-8" ) );
-
-      return CdaResponseParser.performParse( responseBodyIs );
+      // the result is fetched in one call: the engine needs the complete table model with its row count before it reads
+      // any row, so fetching it in pages would only add round trips without saving memory
+      return fetchPage( method, parameters );
     } catch ( UnsupportedEncodingException use ) {
       throw new ReportDataFactoryException( "Failed to encode parameter", use );
-    } catch ( Exception e ) {
-      throw new ReportDataFactoryException( "Failed to send request", e );
     }
   }
 
-  private static String callPlugin( final String pluginName, final String method, final IParameterProvider params )
+  private TypedTableModel fetchPage( final String method, final Map<String, Object> parameters )
     throws ReportDataFactoryException {
-
-    final IPentahoSession userSession = PentahoSessionHolder.getSession();
-    final IPluginManager pluginManager = PentahoSystem.get( IPluginManager.class, userSession );
-
     try {
+      // CDA writes into the pipe on this thread (so that it sees the user's session), while the response is parsed
+      // concurrently. This way the raw response never has to be held in memory as a whole.
+      final PipedInputStream responseBodyIs = new PipedInputStream( PIPE_BUFFER_SIZE );
+      final PipedOutputStream responseBodyOs = new PipedOutputStream( responseBodyIs );
+      final ResponseParserTask parser = new ResponseParserTask( responseBodyIs );
+      final Future<TypedTableModel> parseResult = PARSER_EXECUTOR.submit( parser );
+      try {
+        callPlugin( "cda", method, new SimpleParameterProvider( parameters ), responseBodyOs );
+      } catch ( ReportDataFactoryException e ) {
+        // a failing parser closes the pipe, which makes CDA fail as well; its error is the one worth reporting
+        final Exception parseFailure = parser.getFailure();
+        if ( parseFailure != null ) {
+          throw new ReportDataFactoryException( "Failed to parse response", parseFailure );
+        }
+        parseResult.cancel( true );
+        throw e;
+      } finally {
+        responseBodyOs.close();
+      }
 
+      try {
+        return parseResult.get();
+      } catch ( ExecutionException ee ) {
+        throw new ReportDataFactoryException( "Failed to parse response", unwrap( ee ) );
+      }
+    } catch ( ReportDataFactoryException rdfe ) {
+      throw rdfe;
+    } catch ( Exception e ) {
+      throw new ReportDataFactoryException( "Failed to send request", e );
+    }
+  }
 
-      Object cdaBean = pluginManager.getBean("cda.api");
-      Class cdaBeanClass = cdaBean.getClass();
+  private static void callPlugin( final String pluginName, final String method, final IParameterProvider params,
+                                  final OutputStream outputStream ) throws ReportDataFactoryException {
+    final long startTime = System.currentTimeMillis();
+    try {
+      final CdaApi api = getCdaApi();
 
-      Class[] paramTypes;
       Object[] paramValues;
       Method m;
-      final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 
       if ("listParameters".equals(method)) {
-        paramTypes = new Class[]{String.class,String.class,String.class,String.class,String.class,
-                HttpServletResponse.class, HttpServletRequest.class};
-        m =  cdaBeanClass.getMethod("listParameters", paramTypes);
+        m = api.getListParameters();
         paramValues = new Object[7];
         paramValues[0] = URLDecoder.decode(params.getStringParameter("path", null), "UTF-8");
         paramValues[1] = params.getStringParameter("solution", "");
@@ -111,12 +228,9 @@ public class CdaPluginLocalQueryBackend extends CdaQueryBackend {
         paramValues[3] = params.getStringParameter("outputType", "json");
         paramValues[4] = params.getStringParameter("dataAccessId", "<blank>");
         paramValues[5] = getResponse(outputStream);
-        paramValues[6] = getRequest();
+        paramValues[6] = LOCAL_REQUEST;
       } else {
-        paramTypes = new Class[]{String.class, String.class, int.class,
-                String.class, Boolean.class, Boolean.class, int.class, int.class, Boolean.class,
-                List.class, HttpServletResponse.class, HttpServletRequest.class};
-        m = cdaBeanClass.getMethod("doQueryPost", paramTypes);
+        m = api.getDoQueryPost();
 
         //Get parameters
         paramValues = new Object[12];
@@ -137,16 +251,64 @@ public class CdaPluginLocalQueryBackend extends CdaQueryBackend {
         }
         paramValues[9] = sortList;
         paramValues[10] = getResponse(outputStream);
-        paramValues[11] = getRequest();
+        paramValues[11] = LOCAL_REQUEST;
       }
 
-      m.invoke(cdaBean, paramValues);
-      return outputStream.toString();
+      final long invokeTime = System.currentTimeMillis();
+      m.invoke(api.getBean(), paramValues);
+      if ( logger.isDebugEnabled() ) {
+        final long endTime = System.currentTimeMillis();
+        logger.debug( "CDA call '" + method + "': " + ( invokeTime - startTime ) + "ms setup, "
+            + ( endTime - invokeTime ) + "ms in CDA" ); // NON-NLS
+      }
+    } catch ( InvocationTargetException e ) {
+      throw new ReportDataFactoryException( "Failed to query " + pluginName + " plugin: ", unwrap( e ) );
     } catch ( Exception e ) {
+      // the plugin may have been replaced without us being notified, look it up again next time.
+      invalidateCdaApi();
       throw new ReportDataFactoryException( "Failed to acquire " + pluginName + " plugin: ", e );
     }
   }
 
+  private static Exception unwrap( final Exception e ) {
+    final Throwable cause = e.getCause();
+    if ( cause instanceof Exception ) {
+      return (Exception) cause;
+    }
+    return e;
+  }
+
+  /**
+   * Returns the CDA bean and its methods, looking them up once and keeping them until the plugins are reloaded.
+   */
+  private static CdaApi getCdaApi() throws Exception {
+    synchronized ( CdaPluginLocalQueryBackend.class ) {
+      if ( cdaApi != null ) {
+        return cdaApi;
+      }
+
+      final IPentahoSession userSession = PentahoSessionHolder.getSession();
+      final IPluginManager pluginManager = PentahoSystem.get( IPluginManager.class, userSession );
+      if ( pluginListenerRegistered == false ) {
+        pluginManager.addPluginManagerListener( new IPluginManagerListener() {
+          public void onReload() {
+            invalidateCdaApi();
+          }
+        } );
+        pluginListenerRegistered = true;
+      }
+
+      final Object cdaBean = pluginManager.getBean( "cda.api" );
+      cdaApi = new CdaApi( cdaBean );
+      return cdaApi;
+    }
+  }
+
+  private static void invalidateCdaApi() {
+    synchronized ( CdaPluginLocalQueryBackend.class ) {
+      cdaApi = null;
+    }
+  }
 
   private static HttpServletRequest getRequest() {
     return new HttpServletRequest() {
@@ -585,6 +747,10 @@ public class CdaPluginLocalQueryBackend extends CdaQueryBackend {
       this.targetStream.write(b);
     }
 
+    public void write(byte[] b, int off, int len) throws IOException {
+      this.targetStream.write(b, off, len);
+    }
+
     public void flush() throws IOException {
       super.flush();
       this.targetStream.flush();
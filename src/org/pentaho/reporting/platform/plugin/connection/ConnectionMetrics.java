@@ -0,0 +1,56 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.connection;
+
+/**
+ * Receives connection-acquisition events from the plugin's connection providers. Implementations must be thread-safe,
+ * as they are shared by all reports of the server. The active implementation is configured via the
+ * "org.pentaho.reporting.platform.plugin.connection.ConnectionMetrics" property.
+ */
+public interface ConnectionMetrics {
+  /**
+   * Called after a connection has been obtained successfully.
+   *
+   * @param dataSource the name of the data source.
+   * @param nanos      the time spent waiting for the connection.
+   */
+  public void connectionAcquired( final String dataSource, final long nanos );
+
+  /**
+   * Called when no connection could be obtained.
+   *
+   * @param dataSource the name of the data source.
+   * @param nanos      the time spent before the attempt failed.
+   */
+  public void connectionFailed( final String dataSource, final long nanos );
+
+  /**
+   * Called when the preferred way of obtaining a connection failed and a fallback had to be used.
+   *
+   * @param dataSource the name of the data source.
+   */
+  public void fallbackUsed( final String dataSource );
+
+  /**
+   * Called whenever a connection is handed out to or given back by a report.
+   *
+   * @param dataSource the name of the data source.
+   * @param borrowed   the number of connections the report currently holds for this data source.
+   */
+  public void borrowedConnectionsChanged( final String dataSource, final int borrowed );
+}
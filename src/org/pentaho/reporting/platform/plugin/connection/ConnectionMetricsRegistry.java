@@ -0,0 +1,85 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.connection;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.libraries.base.util.ObjectUtilities;
+
+/**
+ * Provides the configured {@link ConnectionMetrics} implementation. If no implementation is configured or the
+ * configured class cannot be loaded, all events are discarded.
+ */
+public final class ConnectionMetricsRegistry {
+  private static final Log logger = LogFactory.getLog( ConnectionMetricsRegistry.class );
+
+  private static final String METRICS_KEY = "org.pentaho.reporting.platform.plugin.connection.ConnectionMetrics";
+
+  private static class NoOpConnectionMetrics implements ConnectionMetrics {
+    public void connectionAcquired( final String dataSource, final long nanos ) {
+    }
+
+    public void connectionFailed( final String dataSource, final long nanos ) {
+    }
+
+    public void fallbackUsed( final String dataSource ) {
+    }
+
+    public void borrowedConnectionsChanged( final String dataSource, final int borrowed ) {
+    }
+  }
+
+  private static ConnectionMetrics metrics;
+
+  private ConnectionMetricsRegistry() {
+  }
+
+  public static synchronized ConnectionMetrics getMetrics() {
+    if ( metrics == null ) {
+      metrics = createMetrics();
+    }
+    return metrics;
+  }
+
+  /**
+   * Replaces the active implementation. Passing <code>null</code> reloads the configured implementation on next use.
+   */
+  public static synchronized void setMetrics( final ConnectionMetrics metrics ) {
+    ConnectionMetricsRegistry.metrics = metrics;
+  }
+
+  public static boolean isEnabled() {
+    return getMetrics() instanceof NoOpConnectionMetrics == false;
+  }
+
+  private static ConnectionMetrics createMetrics() {
+    final String className = ClassicEngineBoot.getInstance().getExtendedConfig().getConfigProperty( METRICS_KEY );
+    if ( className == null || className.trim().length() == 0 ) {
+      return new NoOpConnectionMetrics();
+    }
+
+    final ConnectionMetrics configured =
+        ObjectUtilities.loadAndInstantiate( className.trim(), ConnectionMetricsRegistry.class, ConnectionMetrics.class );
+    if ( configured == null ) {
+      logger.warn( "Unable to create connection metrics " + className + ", metrics are disabled." ); // NON-NLS
+      return new NoOpConnectionMetrics();
+    }
+    return configured;
+  }
+}
@@ -0,0 +1,200 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.connection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Keeps connection metrics in memory, per data source. Acquisition times are recorded in a histogram with fixed
+ * bucket boundaries; acquisitions slower than the last boundary are also logged as warnings.
+ */
+public class DefaultConnectionMetrics implements ConnectionMetrics {
+  private static final Log logger = LogFactory.getLog( DefaultConnectionMetrics.class );
+
+  /**
+   * Upper bounds (inclusive, in milliseconds) of the histogram buckets. A last, unbounded bucket counts everything
+   * above.
+   */
+  private static final long[] BUCKET_LIMITS = new long[] { 1, 5, 10, 50, 100, 500, 1000, 5000 };
+
+  public static class DataSourceStatistics {
+    private final String dataSource;
+    private final AtomicLong acquired;
+    private final AtomicLong failed;
+    private final AtomicLong fallbacks;
+    private final AtomicLong totalNanos;
+    private final AtomicLong maxBorrowed;
+    private final AtomicLongArray histogram;
+
+    protected DataSourceStatistics( final String dataSource ) {
+      this.dataSource = dataSource;
+      this.acquired = new AtomicLong();
+      this.failed = new AtomicLong();
+      this.fallbacks = new AtomicLong();
+      this.totalNanos = new AtomicLong();
+      this.maxBorrowed = new AtomicLong();
+      this.histogram = new AtomicLongArray( BUCKET_LIMITS.length + 1 );
+    }
+
+    public String getDataSource() {
+      return dataSource;
+    }
+
+    public long getAcquiredCount() {
+      return acquired.get();
+    }
+
+    public long getFailureCount() {
+      return failed.get();
+    }
+
+    public long getFallbackCount() {
+      return fallbacks.get();
+    }
+
+    /**
+     * @return the average time in milliseconds spent acquiring a connection, or zero if none has been acquired yet.
+     */
+    public double getAverageAcquireMillis() {
+      final long count = acquired.get();
+      if ( count == 0 ) {
+        return 0;
+      }
+      return totalNanos.get() / (double) count / 1000000.0;
+    }
+
+    /**
+     * @return the highest number of connections a single report held for this data source at the same time.
+     */
+    public long getMaxBorrowedConnections() {
+      return maxBorrowed.get();
+    }
+
+    public static long[] getBucketLimits() {
+      return BUCKET_LIMITS.clone();
+    }
+
+    /**
+     * @return the number of acquisitions per bucket. The array has one more entry than {@link #getBucketLimits()},
+     * for acquisitions slower than the last limit.
+     */
+    public long[] getHistogram() {
+      final long[] result = new long[histogram.length()];
+      for ( int i = 0; i < result.length; i++ ) {
+        result[i] = histogram.get( i );
+      }
+      return result;
+    }
+
+    public String toString() {
+      return "DataSourceStatistics{" // NON-NLS
+          + "dataSource='" + dataSource + '\'' // NON-NLS
+          + ", acquired=" + acquired // NON-NLS
+          + ", failed=" + failed // NON-NLS
+          + ", fallbacks=" + fallbacks // NON-NLS
+          + ", averageAcquireMillis=" + getAverageAcquireMillis() // NON-NLS
+          + ", maxBorrowed=" + maxBorrowed // NON-NLS
+          + '}';
+    }
+
+    private void record( final long nanos ) {
+      totalNanos.addAndGet( nanos );
+      final long millis = TimeUnit.NANOSECONDS.toMillis( nanos );
+      int bucket = 0;
+      while ( bucket < BUCKET_LIMITS.length && millis > BUCKET_LIMITS[bucket] ) {
+        bucket += 1;
+      }
+      histogram.incrementAndGet( bucket );
+    }
+
+    private void updateMaxBorrowed( final int borrowed ) {
+      long current = maxBorrowed.get();
+      while ( borrowed > current ) {
+        if ( maxBorrowed.compareAndSet( current, borrowed ) ) {
+          return;
+        }
+        current = maxBorrowed.get();
+      }
+    }
+  }
+
+  private final ConcurrentMap<String, DataSourceStatistics> statistics;
+
+  public DefaultConnectionMetrics() {
+    statistics = new ConcurrentHashMap<String, DataSourceStatistics>();
+  }
+
+  public void connectionAcquired( final String dataSource, final long nanos ) {
+    final DataSourceStatistics stats = getOrCreate( dataSource );
+    stats.acquired.incrementAndGet();
+    stats.record( nanos );
+
+    if ( TimeUnit.NANOSECONDS.toMillis( nanos ) > BUCKET_LIMITS[BUCKET_LIMITS.length - 1] ) {
+      logger.warn( "Waited " + TimeUnit.NANOSECONDS.toMillis( nanos ) + "ms for a connection to " // NON-NLS
+          + dataSource ); // NON-NLS
+    }
+  }
+
+  public void connectionFailed( final String dataSource, final long nanos ) {
+    getOrCreate( dataSource ).failed.incrementAndGet();
+  }
+
+  public void fallbackUsed( final String dataSource ) {
+    getOrCreate( dataSource ).fallbacks.incrementAndGet();
+  }
+
+  public void borrowedConnectionsChanged( final String dataSource, final int borrowed ) {
+    getOrCreate( dataSource ).updateMaxBorrowed( borrowed );
+  }
+
+  public DataSourceStatistics getStatistics( final String dataSource ) {
+    return statistics.get( String.valueOf( dataSource ) );
+  }
+
+  public List<DataSourceStatistics> getAllStatistics() {
+    return Collections.unmodifiableList( new ArrayList<DataSourceStatistics>( statistics.values() ) );
+  }
+
+  public void reset() {
+    statistics.clear();
+  }
+
+  private DataSourceStatistics getOrCreate( final String dataSource ) {
+    final String key = String.valueOf( dataSource );
+    final DataSourceStatistics stats = statistics.get( key );
+    if ( stats != null ) {
+      return stats;
+    }
+    final DataSourceStatistics created = new DataSourceStatistics( key );
+    final DataSourceStatistics existing = statistics.putIfAbsent( key, created );
+    if ( existing != null ) {
+      return existing;
+    }
+    return created;
+  }
+}
@@ -0,0 +1,212 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.connection;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+
+/**
+ * Remembers the schema definitions returned by the Mondrian catalog service. The catalog service checks the user's
+ * permissions on each lookup, so by default a definition is only shared between the sessions of the same user. If the
+ * server does not restrict access to catalogs, definitions can be shared between all users by setting
+ * "org.pentaho.reporting.platform.plugin.connection.MondrianCatalogDefinitionCache.ShareAcrossUsers" to true.
+ * <p/>
+ * The catalog service does not announce republished or removed catalogs, so every entry expires after a configurable
+ * time (60 seconds by default) and the number of entries is bounded. In addition, the Mondrian connection provider
+ * drops all entries pointing to a schema definition that could not be opened, via
+ * {@link #invalidateDefinition(String)}, so that a moved or removed schema is looked up again on the next attempt.
+ */
+public final class MondrianCatalogDefinitionCache {
+  private static final String CACHE_TIME_KEY =
+      "org.pentaho.reporting.platform.plugin.connection.MondrianCatalogDefinitionCache.CacheTime";
+  private static final String SHARE_KEY =
+      "org.pentaho.reporting.platform.plugin.connection.MondrianCatalogDefinitionCache.ShareAcrossUsers";
+  private static final int DEFAULT_CACHE_TIME = 60000;
+  /**
+   * Once the cache holds this many entries, expired entries are purged before a new one is added. If the cache is
+   * still full afterwards, it is cleared.
+   */
+  private static final int MAXIMUM_SIZE = 1000;
+
+  private static class CacheKey {
+    private final String catalog;
+    private final String user;
+
+    private CacheKey( final String catalog, final String user ) {
+      this.catalog = catalog;
+      this.user = user;
+    }
+
+    public boolean equals( final Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( o == null || getClass() != o.getClass() ) {
+        return false;
+      }
+      final CacheKey that = (CacheKey) o;
+      if ( !catalog.equals( that.catalog ) ) {
+        return false;
+      }
+      if ( user != null ? !user.equals( that.user ) : that.user != null ) {
+        return false;
+      }
+      return true;
+    }
+
+    public int hashCode() {
+      int result = catalog.hashCode();
+      result = 31 * result + ( user != null ? user.hashCode() : 0 );
+      return result;
+    }
+  }
+
+  private static class CacheEntry {
+    private final String definition;
+    private final long expires;
+
+    private CacheEntry( final String definition, final long expires ) {
+      this.definition = definition;
+      this.expires = expires;
+    }
+
+    public boolean isExpired( final long now ) {
+      return now >= expires;
+    }
+  }
+
+  private static final MondrianCatalogDefinitionCache instance = new MondrianCatalogDefinitionCache();
+
+  private final ConcurrentMap<CacheKey, CacheEntry> entries;
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+
+  private MondrianCatalogDefinitionCache() {
+    entries = new ConcurrentHashMap<CacheKey, CacheEntry>();
+    hits = new AtomicLong();
+    misses = new AtomicLong();
+  }
+
+  public static MondrianCatalogDefinitionCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * @return the cached definition, or <code>null</code> if there is none or the session cannot be identified.
+   */
+  public String get( final String catalog, final IPentahoSession session ) {
+    final CacheKey key = createKey( catalog, session );
+    if ( key == null ) {
+      return null;
+    }
+    final CacheEntry entry = entries.get( key );
+    if ( entry == null || entry.isExpired( System.currentTimeMillis() ) ) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.definition;
+  }
+
+  public void put( final String catalog, final IPentahoSession session, final String definition ) {
+    final CacheKey key = createKey( catalog, session );
+    if ( key == null || definition == null ) {
+      return;
+    }
+    final long now = System.currentTimeMillis();
+    if ( entries.size() >= MAXIMUM_SIZE ) {
+      purgeExpired( now );
+      if ( entries.size() >= MAXIMUM_SIZE ) {
+        entries.clear();
+      }
+    }
+    entries.put( key, new CacheEntry( definition, now + getCacheTime() ) );
+  }
+
+  /**
+   * Removes the definitions of the given catalog for all users.
+   */
+  public void invalidate( final String catalog ) {
+    for ( final Iterator<CacheKey> it = entries.keySet().iterator(); it.hasNext(); ) {
+      if ( it.next().catalog.equals( catalog ) ) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all entries that resolved to the given schema definition, for all catalogs and users.
+   */
+  public void invalidateDefinition( final String definition ) {
+    if ( definition == null ) {
+      return;
+    }
+    for ( final Iterator<CacheEntry> it = entries.values().iterator(); it.hasNext(); ) {
+      if ( definition.equals( it.next().definition ) ) {
+        it.remove();
+      }
+    }
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public void clear() {
+    entries.clear();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  private CacheKey createKey( final String catalog, final IPentahoSession session ) {
+    if ( catalog == null || getCacheTime() <= 0 ) {
+      return null;
+    }
+    if ( ClassicEngineBoot.getInstance().getExtendedConfig().getBoolProperty( SHARE_KEY, false ) ) {
+      return new CacheKey( catalog, null );
+    }
+    if ( session == null || session.getName() == null ) {
+      return null;
+    }
+    return new CacheKey( catalog, session.getName() );
+  }
+
+  private void purgeExpired( final long now ) {
+    for ( final Iterator<Map.Entry<CacheKey, CacheEntry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+      if ( it.next().getValue().isExpired( now ) ) {
+        it.remove();
+      }
+    }
+  }
+
+  private static int getCacheTime() {
+    return ClassicEngineBoot.getInstance().getExtendedConfig().getIntProperty( CACHE_TIME_KEY, DEFAULT_CACHE_TIME );
+  }
+}
@@ -0,0 +1,197 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.connection;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.ILogoutListener;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.PentahoAccessControlException;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+
+/**
+ * Remembers the Mondrian role string computed for a session and catalog. Role mappers may query the security backend
+ * (for instance LDAP) on every call, and a single OLAP report asks for the roles of each of its connections at least
+ * twice. Entries expire after a configurable time and are dropped when the session logs out.
+ */
+public final class MondrianRoleMappingCache implements ILogoutListener {
+  private static final Log logger = LogFactory.getLog( MondrianRoleMappingCache.class );
+
+  private static final String CACHE_TIME_KEY =
+      "org.pentaho.reporting.platform.plugin.connection.MondrianRoleMappingCache.CacheTime";
+  private static final long DEFAULT_CACHE_TIME = 60000;
+  /**
+   * Once the cache holds this many entries, expired entries are purged before a new one is added.
+   */
+  private static final int PURGE_THRESHOLD = 10000;
+
+  public interface RoleMapping {
+    public String computeRoleString( final String catalog ) throws PentahoAccessControlException;
+  }
+
+  private static class CacheKey {
+    private final String sessionId;
+    private final String catalog;
+
+    private CacheKey( final String sessionId, final String catalog ) {
+      this.sessionId = sessionId;
+      this.catalog = catalog;
+    }
+
+    public boolean equals( final Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( o == null || getClass() != o.getClass() ) {
+        return false;
+      }
+      final CacheKey that = (CacheKey) o;
+      if ( !sessionId.equals( that.sessionId ) ) {
+        return false;
+      }
+      if ( catalog != null ? !catalog.equals( that.catalog ) : that.catalog != null ) {
+        return false;
+      }
+      return true;
+    }
+
+    public int hashCode() {
+      int result = sessionId.hashCode();
+      result = 31 * result + ( catalog != null ? catalog.hashCode() : 0 );
+      return result;
+    }
+  }
+
+  private static class CacheEntry {
+    private final String roleString;
+    private final long expires;
+
+    private CacheEntry( final String roleString, final long expires ) {
+      this.roleString = roleString;
+      this.expires = expires;
+    }
+
+    public boolean isExpired( final long now ) {
+      return now >= expires;
+    }
+  }
+
+  private static MondrianRoleMappingCache instance;
+
+  private final ConcurrentMap<CacheKey, CacheEntry> entries;
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+
+  private MondrianRoleMappingCache() {
+    entries = new ConcurrentHashMap<CacheKey, CacheEntry>();
+    hits = new AtomicLong();
+    misses = new AtomicLong();
+  }
+
+  public static synchronized MondrianRoleMappingCache getInstance() {
+    if ( instance == null ) {
+      instance = new MondrianRoleMappingCache();
+      PentahoSystem.addLogoutListener( instance );
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the role string for the given session and catalog, computing it with the given mapping if it is not
+   * cached. Failed mappings are not cached.
+   *
+   * @param session the session of the user, or <code>null</code> to bypass the cache.
+   * @param catalog the catalog for which roles are mapped.
+   * @param mapping computes the role string on a cache miss.
+   * @return the role string, which may be <code>null</code>.
+   */
+  public String getRoleString( final IPentahoSession session, final String catalog, final RoleMapping mapping )
+    throws PentahoAccessControlException {
+    final long cacheTime = getCacheTime();
+    if ( session == null || session.getId() == null || cacheTime <= 0 ) {
+      return mapping.computeRoleString( catalog );
+    }
+
+    final CacheKey key = new CacheKey( session.getId(), catalog );
+    final long now = System.currentTimeMillis();
+    final CacheEntry entry = entries.get( key );
+    if ( entry != null && entry.isExpired( now ) == false ) {
+      hits.incrementAndGet();
+      return entry.roleString;
+    }
+
+    misses.incrementAndGet();
+    final String roleString = mapping.computeRoleString( catalog );
+    if ( entries.size() >= PURGE_THRESHOLD ) {
+      purgeExpired( now );
+    }
+    entries.put( key, new CacheEntry( roleString, now + cacheTime ) );
+    return roleString;
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public void clear() {
+    entries.clear();
+  }
+
+  public void onLogout( final IPentahoSession session ) {
+    final String sessionId = session.getId();
+    if ( sessionId == null ) {
+      return;
+    }
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( "Removing mapped Mondrian roles for session " + sessionId ); // NON-NLS
+    }
+    for ( final Iterator<CacheKey> it = entries.keySet().iterator(); it.hasNext(); ) {
+      if ( sessionId.equals( it.next().sessionId ) ) {
+        it.remove();
+      }
+    }
+  }
+
+  private void purgeExpired( final long now ) {
+    for ( final Iterator<Map.Entry<CacheKey, CacheEntry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+      if ( it.next().getValue().isExpired( now ) ) {
+        it.remove();
+      }
+    }
+  }
+
+  private static long getCacheTime() {
+    return ClassicEngineBoot.getInstance().getExtendedConfig().getIntProperty( CACHE_TIME_KEY,
+        (int) DEFAULT_CACHE_TIME );
+  }
+}
@@ -17,6 +17,7 @@
 
 package org.pentaho.reporting.platform.plugin.connection;
 
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.plugin.action.mondrian.catalog.IMondrianCatalogService;
@@ -49,14 +50,20 @@ public class PentahoCubeFileProvider extends DefaultCubeFileProvider {
     // If the name is given, but not found, we report an error, in the same way a non-existing JNDI definition
     // would raise an error.
     if ( StringUtils.isEmpty( getCubeConnectionName() ) == false ) {
-      final IMondrianCatalogService catalogService =
-          PentahoSystem.get( IMondrianCatalogService.class, PentahoSessionHolder.getSession() );
-      final MondrianCatalog catalog =
-          catalogService.getCatalog( getCubeConnectionName(), PentahoSessionHolder.getSession() );
+      final IPentahoSession session = PentahoSessionHolder.getSession();
+      final MondrianCatalogDefinitionCache cache = MondrianCatalogDefinitionCache.getInstance();
+      final String cachedDefinition = cache.get( getCubeConnectionName(), session );
+      if ( cachedDefinition != null ) {
+        return cachedDefinition;
+      }
+
+      final IMondrianCatalogService catalogService = PentahoSystem.get( IMondrianCatalogService.class, session );
+      final MondrianCatalog catalog = catalogService.getCatalog( getCubeConnectionName(), session );
       if ( catalog == null ) {
         throw new ReportDataFactoryException( "Unable to locate mondrian schema with name '" + getCubeConnectionName()
             + "'" );
       }
+      cache.put( getCubeConnectionName(), session, catalog.getDefinition() );
       return catalog.getDefinition();
     }
 
@@ -17,20 +17,91 @@
 
 package org.pentaho.reporting.platform.plugin.connection;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.sql.DataSource;
 
 import org.pentaho.platform.api.data.IDBDatasourceService;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
 import org.pentaho.reporting.engine.classic.core.modules.misc.datafactory.sql.ConnectionProvider;
 
 /**
  * @author wseyler
  */
 public class PentahoJndiDatasourceConnectionProvider implements ConnectionProvider {
+  private static final String CACHE_TIME_KEY =
+      "org.pentaho.reporting.platform.plugin.connection.PentahoJndiDatasourceConnectionProvider.DataSourceCacheTime";
+
+  private static final ConcurrentMap<String, CachedDataSource> DATA_SOURCES =
+      new ConcurrentHashMap<String, CachedDataSource>();
+
+  private static class CachedDataSource {
+    private final DataSource dataSource;
+    private final long created;
+
+    private CachedDataSource( final DataSource dataSource ) {
+      this.dataSource = dataSource;
+      this.created = System.currentTimeMillis();
+    }
+
+    public DataSource getDataSource() {
+      return dataSource;
+    }
+
+    public boolean isValid( final long cacheTime ) {
+      return System.currentTimeMillis() - created < cacheTime;
+    }
+  }
+
+  /**
+   * Tracks how many connections the report run that opened the connection currently holds. The count is kept by the
+   * run's {@link ReportConnectionBroker}, so it covers all data factories and subreports of the report. Connections
+   * opened outside of a report run are counted per provider.
+   * <p/>
+   * Connections are only wrapped while connection metrics are configured. The wrapper implements
+   * {@link Connection} only, so code that casts to a vendor class has to use {@link Connection#unwrap(Class)}.
+   */
+  private class BorrowedConnectionHandler implements InvocationHandler {
+    private final Connection connection;
+    private final ConnectionMetrics metrics;
+    private final ReportConnectionBroker run;
+    private boolean closed;
+
+    private BorrowedConnectionHandler( final Connection connection, final ConnectionMetrics metrics,
+                                       final ReportConnectionBroker run ) {
+      this.connection = connection;
+      this.metrics = metrics;
+      this.run = run;
+    }
+
+    public Object invoke( final Object proxy, final Method method, final Object[] args ) throws Throwable {
+      if ( "close".equals( method.getName() ) && method.getParameterTypes().length == 0 ) {
+        synchronized ( this ) {
+          if ( closed == false ) {
+            closed = true;
+            metrics.borrowedConnectionsChanged( jndiName, changeBorrowedConnections( run, -1 ) );
+          }
+        }
+      }
+      try {
+        return method.invoke( connection, args );
+      } catch ( InvocationTargetException ite ) {
+        throw ite.getTargetException();
+      }
+    }
+  }
+
+  private final AtomicInteger borrowedConnections = new AtomicInteger();
   private String jndiName;
   private String username;
   private String password;
@@ -51,10 +122,54 @@ public class PentahoJndiDatasourceConnectionProvider implements ConnectionProvid
    * @throws java.sql.SQLException
    */
   public Connection createConnection( final String user, final String password ) throws SQLException {
+    final ReportConnectionBroker broker = ReportConnectionBroker.getCurrent();
+    if ( broker == null || broker.isSharingEnabled() == false ) {
+      return openConnection( user, password );
+    }
+
+    final ArrayList<Object> key = new ArrayList<Object>();
+    key.add( jndiName );
+    key.add( username != null ? username : user );
+    key.add( this.password != null ? this.password : password );
+    final Connection sharedConnection = broker.lookup( key );
+    if ( sharedConnection != null ) {
+      return sharedConnection;
+    }
+    return broker.register( key, openConnection( user, password ) );
+  }
+
+  private Connection openConnection( final String user, final String password ) throws SQLException {
+    final ConnectionMetrics metrics = ConnectionMetricsRegistry.getMetrics();
+    final long startTime = System.nanoTime();
+    final Connection connection;
     try {
-      final IDBDatasourceService datasourceService =
-          PentahoSystem.getObjectFactory().get( IDBDatasourceService.class, null );
-      final DataSource dataSource = datasourceService.getDataSource( jndiName );
+      connection = acquireConnection( user, password, metrics );
+    } catch ( SQLException e ) {
+      metrics.connectionFailed( jndiName, System.nanoTime() - startTime );
+      throw e;
+    }
+    metrics.connectionAcquired( jndiName, System.nanoTime() - startTime );
+
+    if ( ConnectionMetricsRegistry.isEnabled() == false ) {
+      return connection;
+    }
+    final ReportConnectionBroker run = ReportConnectionBroker.getCurrent();
+    metrics.borrowedConnectionsChanged( jndiName, changeBorrowedConnections( run, 1 ) );
+    return (Connection) Proxy.newProxyInstance( Connection.class.getClassLoader(),
+        new Class[] { Connection.class }, new BorrowedConnectionHandler( connection, metrics, run ) );
+  }
+
+  private int changeBorrowedConnections( final ReportConnectionBroker run, final int delta ) {
+    if ( run != null ) {
+      return run.changeBorrowedConnections( jndiName, delta );
+    }
+    return borrowedConnections.addAndGet( delta );
+  }
+
+  private Connection acquireConnection( final String user, final String password, final ConnectionMetrics metrics )
+    throws SQLException {
+    try {
+      final DataSource dataSource = lookupDataSource();
       if ( dataSource != null ) {
         final String realUser;
         final String realPassword;
@@ -72,7 +187,7 @@ public class PentahoJndiDatasourceConnectionProvider implements ConnectionProvid
         if ( realUser == null ) {
           final Connection connection = dataSource.getConnection();
           if ( connection == null ) {
-            datasourceService.clearDataSource( jndiName );
+            clearDataSource();
             throw new SQLException( Messages.getInstance().getErrorString(
                 "PentahoDatasourceConnectionProvider.ERROR_0001_INVALID_CONNECTION", jndiName ) ); //$NON-NLS-1$
           }
@@ -82,24 +197,26 @@ public class PentahoJndiDatasourceConnectionProvider implements ConnectionProvid
         try {
           final Connection connection = dataSource.getConnection( realUser, realPassword );
           if ( connection == null ) {
-            datasourceService.clearDataSource( jndiName );
+            clearDataSource();
             throw new SQLException( "JNDI DataSource is invalid; it returned null "
                + "without throwing a meaningful error." );
           }
           return connection;
         } catch ( UnsupportedOperationException uoe ) {
+          metrics.fallbackUsed( jndiName );
           final Connection connection = dataSource.getConnection();
           if ( connection == null ) {
-            datasourceService.clearDataSource( jndiName );
+            clearDataSource();
             throw new SQLException( Messages.getInstance().getErrorString(
                 "PentahoDatasourceConnectionProvider.ERROR_0001_INVALID_CONNECTION", jndiName ) ); //$NON-NLS-1$
           }
           return connection;
         } catch ( SQLException ex ) {
+          metrics.fallbackUsed( jndiName );
           final Connection nativeConnection = dataSource.getConnection();
           if ( nativeConnection == null ) {
             // clear datasource cache
-            datasourceService.clearDataSource( jndiName );
+            clearDataSource();
             throw new SQLException( Messages.getInstance().getErrorString(
                 "PentahoDatasourceConnectionProvider.ERROR_0001_INVALID_CONNECTION", jndiName ) ); //$NON-NLS-1$
           }
@@ -107,15 +224,13 @@ public class PentahoJndiDatasourceConnectionProvider implements ConnectionProvid
         }
       } else {
         // clear datasource cache
-        datasourceService.clearDataSource( jndiName );
+        clearDataSource();
         throw new SQLException( Messages.getInstance().getErrorString(
             "PentahoDatasourceConnectionProvider.ERROR_0001_INVALID_CONNECTION", jndiName ) ); //$NON-NLS-1$
       }
     } catch ( Exception e ) {
       try {
-        final IDBDatasourceService datasourceService =
-            PentahoSystem.getObjectFactory().get( IDBDatasourceService.class, null );
-        datasourceService.clearDataSource( jndiName );
+        clearDataSource();
         throw new SQLException(
             Messages
                 .getInstance()
@@ -131,6 +246,42 @@ public class PentahoJndiDatasourceConnectionProvider implements ConnectionProvid
     }
   }
 
+  /**
+   * Returns the data source for the current JNDI name. Resolved data sources are kept for a configurable time, so
+   * that most connection requests do not need to go through the object factory and the datasource service.
+   */
+  private DataSource lookupDataSource() throws ObjectFactoryException {
+    final long cacheTime = ClassicEngineBoot.getInstance().getExtendedConfig().getIntProperty( CACHE_TIME_KEY, 0 );
+    if ( cacheTime > 0 ) {
+      final CachedDataSource cached = DATA_SOURCES.get( jndiName );
+      if ( cached != null && cached.isValid( cacheTime ) ) {
+        return cached.getDataSource();
+      }
+    }
+
+    final IDBDatasourceService datasourceService =
+        PentahoSystem.getObjectFactory().get( IDBDatasourceService.class, null );
+    final DataSource dataSource = datasourceService.getDataSource( jndiName );
+    if ( dataSource != null && cacheTime > 0 ) {
+      DATA_SOURCES.put( jndiName, new CachedDataSource( dataSource ) );
+    }
+    return dataSource;
+  }
+
+  private void clearDataSource() throws ObjectFactoryException {
+    DATA_SOURCES.remove( jndiName );
+    final IDBDatasourceService datasourceService =
+        PentahoSystem.getObjectFactory().get( IDBDatasourceService.class, null );
+    datasourceService.clearDataSource( jndiName );
+  }
+
+  /**
+   * Drops all cached data sources. The datasource service's own cache is not affected.
+   */
+  public static void clearDataSourceCache() {
+    DATA_SOURCES.clear();
+  }
+
   public String getJndiName() {
     return jndiName;
   }
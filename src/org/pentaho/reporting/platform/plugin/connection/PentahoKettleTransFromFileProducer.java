@@ -24,6 +24,12 @@ import org.pentaho.reporting.engine.classic.extensions.datasources.kettle.Kettle
 import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
 import org.pentaho.reporting.platform.plugin.RepositoryResourceLoader;
 
+/**
+ * Resolves transformation files stored in the solution repository. Running the transformation is left to the base
+ * producer, which collects all rows of the target step before it returns. The rows cannot be handed to the report
+ * while the transformation is still running: the reporting engine asks a data factory's table model for its row count
+ * before it processes the first row, so the complete result has to be known by then.
+ */
 public class PentahoKettleTransFromFileProducer extends KettleTransFromFileProducer {
   public PentahoKettleTransFromFileProducer(final String repositoryName,
                                             final String transformationFile,
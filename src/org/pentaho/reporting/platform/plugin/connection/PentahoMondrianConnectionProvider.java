@@ -34,6 +34,13 @@ import org.pentaho.reporting.libraries.base.util.StringUtils;
 public class PentahoMondrianConnectionProvider extends DefaultMondrianConnectionProvider {
   public static final String MDX_CONNECTION_MAPPER_KEY = "Mondrian-UserRoleMapper"; //$NON-NLS-1$
 
+  private static final MondrianRoleMappingCache.RoleMapping ROLE_MAPPING =
+      new MondrianRoleMappingCache.RoleMapping() {
+        public String computeRoleString( final String catalog ) throws PentahoAccessControlException {
+          return mapRoles( catalog );
+        }
+      };
+
   public PentahoMondrianConnectionProvider() {
   }
 
@@ -50,12 +57,21 @@ public class PentahoMondrianConnectionProvider extends DefaultMondrianConnection
         }
       }
       return super.createConnection( properties, dataSource );
+    } catch ( ReportDataFactoryException e ) {
+      // the schema may have been moved or removed since its definition was cached
+      MondrianCatalogDefinitionCache.getInstance().invalidateDefinition( properties.getProperty( "Catalog" ) );
+      throw e;
     } catch ( PentahoAccessControlException e ) {
       throw new ReportDataFactoryException( "Failed to map roles", e );
     }
   }
 
   private String computeRoleString( final String catalog ) throws PentahoAccessControlException {
+    return MondrianRoleMappingCache.getInstance().getRoleString( PentahoSessionHolder.getSession(), catalog,
+        ROLE_MAPPING );
+  }
+
+  private static String mapRoles( final String catalog ) throws PentahoAccessControlException {
     if ( PentahoSystem.getObjectFactory().objectDefined( MDX_CONNECTION_MAPPER_KEY ) ) {
       final IConnectionUserRoleMapper mondrianUserRoleMapper =
           PentahoSystem.get( IConnectionUserRoleMapper.class, MDX_CONNECTION_MAPPER_KEY, null );
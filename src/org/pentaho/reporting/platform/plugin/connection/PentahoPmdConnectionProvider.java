@@ -18,18 +18,62 @@
 package org.pentaho.reporting.platform.plugin.connection;
 
 import java.sql.Connection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.metadata.repository.IMetadataDomainRepository;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
 import org.pentaho.reporting.engine.classic.core.ReportDataFactoryException;
 import org.pentaho.reporting.engine.classic.extensions.datasources.pmd.PmdConnectionProvider;
+import org.pentaho.reporting.libraries.base.config.ExtendedConfiguration;
 import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
 import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
-import org.pentaho.reporting.platform.plugin.CommonUtil;
 import org.pentaho.reporting.platform.plugin.messages.Messages;
 
 public class PentahoPmdConnectionProvider extends PmdConnectionProvider {
+  private static final Log logger = LogFactory.getLog( PentahoPmdConnectionProvider.class );
+
+  private static final String ALLOW_FALLBACK_KEY =
+      "org.pentaho.reporting.platform.plugin.connection.PentahoPmdConnectionProvider.AllowJdbcFallback";
+  private static final String WARNING_INTERVAL_KEY =
+      "org.pentaho.reporting.platform.plugin.connection.PentahoPmdConnectionProvider.FallbackWarningInterval";
+  private static final int DEFAULT_WARNING_INTERVAL = 60000;
+
+  /**
+   * How connections for one JNDI name are obtained. The JNDI provider is shared by all metadata queries for that
+   * name. Every query tries JNDI first; a fallback to plain JDBC is logged as a warning at most once per warning
+   * interval, so that a broken datasource does not flood the log.
+   */
+  private static class ConnectionStrategy {
+    private final PentahoJndiDatasourceConnectionProvider jndiProvider;
+    private final AtomicInteger fallbacks;
+    private volatile long lastWarningAt;
+
+    private ConnectionStrategy( final String jndiName ) {
+      jndiProvider = new PentahoJndiDatasourceConnectionProvider();
+      jndiProvider.setJndiName( jndiName );
+      fallbacks = new AtomicInteger();
+    }
+
+    public synchronized boolean isWarningDue( final long warningInterval ) {
+      final long now = System.currentTimeMillis();
+      if ( lastWarningAt != 0 && now - lastWarningAt < warningInterval ) {
+        return false;
+      }
+      lastWarningAt = now;
+      return true;
+    }
+  }
+
+  private static final ConcurrentMap<String, ConnectionStrategy> STRATEGIES =
+      new ConcurrentHashMap<String, ConnectionStrategy>();
+
   public PentahoPmdConnectionProvider() {
   }
 
@@ -48,17 +92,14 @@ public class PentahoPmdConnectionProvider extends PmdConnectionProvider {
       if ( databaseMeta.getAccessType() == DatabaseMeta.TYPE_ACCESS_JNDI ) {
         final String jndiName = databaseMeta.getDatabaseName();
         if ( jndiName != null ) {
-          try {
-            final PentahoJndiDatasourceConnectionProvider connectionProvider =
-                new PentahoJndiDatasourceConnectionProvider();
-            connectionProvider.setJndiName( jndiName );
-            return connectionProvider.createConnection( realUser, realPassword );
-          } catch ( Exception e ) {
-            // fall back to JDBC
-            CommonUtil.checkStyleIgnore();
+          final Connection connection = createJndiConnection( jndiName, realUser, realPassword );
+          if ( connection != null ) {
+            return connection;
           }
         }
       }
+    } catch ( ReportDataFactoryException rdfe ) {
+      throw rdfe;
     } catch ( Exception e ) {
       throw new ReportDataFactoryException(
           Messages.getInstance().getString( "ReportPlugin.unableToCreateConnection" ), e ); //$NON-NLS-1$
@@ -66,4 +107,59 @@ public class PentahoPmdConnectionProvider extends PmdConnectionProvider {
 
     return super.createConnection( databaseMeta, username, password );
   }
+
+  /**
+   * @return the connection, or <code>null</code> if the caller should fall back to a plain JDBC connection.
+   */
+  private Connection createJndiConnection( final String jndiName, final String user, final String password )
+    throws ReportDataFactoryException {
+    final ConnectionStrategy strategy = getStrategy( jndiName );
+    final ExtendedConfiguration config = ClassicEngineBoot.getInstance().getExtendedConfig();
+    final boolean allowFallback = config.getBoolProperty( ALLOW_FALLBACK_KEY, true );
+
+    final Exception failure;
+    try {
+      return strategy.jndiProvider.createConnection( user, password );
+    } catch ( Exception e ) {
+      failure = e;
+    }
+
+    if ( allowFallback == false ) {
+      throw new ReportDataFactoryException( Messages.getInstance().getString(
+          "ReportPlugin.errorJndiFallbackForbidden", jndiName ), failure ); //$NON-NLS-1$
+    }
+
+    ConnectionMetricsRegistry.getMetrics().fallbackUsed( jndiName );
+    strategy.fallbacks.incrementAndGet();
+    if ( strategy.isWarningDue( config.getIntProperty( WARNING_INTERVAL_KEY, DEFAULT_WARNING_INTERVAL ) ) ) {
+      logger.warn( Messages.getInstance().getString( "ReportPlugin.warnJndiFallback", jndiName ), failure ); //$NON-NLS-1$
+    } else if ( logger.isDebugEnabled() ) {
+      logger.debug( "Using plain JDBC instead of JNDI name " + jndiName, failure ); // NON-NLS
+    }
+    return null;
+  }
+
+  private static ConnectionStrategy getStrategy( final String jndiName ) {
+    final ConnectionStrategy strategy = STRATEGIES.get( jndiName );
+    if ( strategy != null ) {
+      return strategy;
+    }
+    final ConnectionStrategy created = new ConnectionStrategy( jndiName );
+    final ConnectionStrategy existing = STRATEGIES.putIfAbsent( jndiName, created );
+    if ( existing != null ) {
+      return existing;
+    }
+    return created;
+  }
+
+  /**
+   * @return how often metadata queries for the given JNDI name had to use a plain JDBC connection.
+   */
+  public static int getFallbackCount( final String jndiName ) {
+    final ConnectionStrategy strategy = STRATEGIES.get( jndiName );
+    if ( strategy == null ) {
+      return 0;
+    }
+    return strategy.fallbacks.get();
+  }
 }
@@ -0,0 +1,284 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.connection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.AttributeNames;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+
+/**
+ * Shares physical connections between all data factories and subreports of one report run. A run is bracketed by
+ * {@link #begin()} and {@link #end()} on the thread that processes the report; while it is active, connection
+ * providers hand out the same connection for the same data source and credentials.
+ * <p/>
+ * Every caller receives its own handle. Closing a handle releases the caller's claim; the physical connection is
+ * closed once the run has ended and no handle is open any more. Data factories that are kept open beyond the run (for
+ * instance by cached paginated output) therefore keep a working connection.
+ * <p/>
+ * Sharing is disabled by default. It is enabled for all reports via the global configuration, or for a single report
+ * by setting the report attribute {@link #SHARE_CONNECTIONS_ATTRIBUTE} in the Pentaho namespace to "true". Only enable
+ * it for reports whose data factories can work on the same connection:
+ * <ul>
+ * <li>connection settings such as auto-commit, read-only and the transaction isolation level changed by one data
+ * factory are seen by all others;</li>
+ * <li>session state such as temporary tables, session variables or <code>SET</code> statements is shared;</li>
+ * <li>a data factory that still streams an open result set may have it closed or invalidated by the queries of
+ * another data factory on drivers that allow only one active result set per connection.</li>
+ * </ul>
+ * When sharing is disabled, the run is still tracked, so that per-report connection figures can be collected.
+ */
+public final class ReportConnectionBroker {
+  private static final Log logger = LogFactory.getLog( ReportConnectionBroker.class );
+
+  private static final String ENABLED_KEY =
+      "org.pentaho.reporting.platform.plugin.connection.ReportConnectionBroker.Enabled";
+
+  /**
+   * The report attribute (in the {@link AttributeNames.Pentaho#NAMESPACE Pentaho namespace}) that enables or disables
+   * connection sharing for a single report, overriding the global setting.
+   */
+  public static final String SHARE_CONNECTIONS_ATTRIBUTE = "share-connections"; // NON-NLS
+
+  private static final ThreadLocal<ReportConnectionBroker> CURRENT = new ThreadLocal<ReportConnectionBroker>();
+
+  private class SharedConnection {
+    private final Object key;
+    private final Connection connection;
+    private int handles;
+
+    private SharedConnection( final Object key, final Connection connection ) {
+      this.key = key;
+      this.connection = connection;
+    }
+  }
+
+  private class ConnectionHandle implements InvocationHandler {
+    private final SharedConnection shared;
+    private boolean closed;
+
+    private ConnectionHandle( final SharedConnection shared ) {
+      this.shared = shared;
+    }
+
+    public Object invoke( final Object proxy, final Method method, final Object[] args ) throws Throwable {
+      final String name = method.getName();
+      final int parameterCount = method.getParameterTypes().length;
+      if ( "close".equals( name ) && parameterCount == 0 ) {
+        synchronized ( ReportConnectionBroker.this ) {
+          if ( closed == false ) {
+            closed = true;
+            release( shared );
+          }
+        }
+        return null;
+      }
+      if ( "isClosed".equals( name ) && parameterCount == 0 ) {
+        synchronized ( ReportConnectionBroker.this ) {
+          if ( closed ) {
+            return Boolean.TRUE;
+          }
+        }
+      }
+      if ( "equals".equals( name ) && parameterCount == 1 ) {
+        return proxy == args[0];
+      }
+      if ( "hashCode".equals( name ) && parameterCount == 0 ) {
+        return System.identityHashCode( proxy );
+      }
+
+      synchronized ( ReportConnectionBroker.this ) {
+        if ( closed ) {
+          throw new SQLException( "Connection has been closed." ); // NON-NLS
+        }
+      }
+      try {
+        return method.invoke( shared.connection, args );
+      } catch ( InvocationTargetException ite ) {
+        throw ite.getTargetException();
+      }
+    }
+  }
+
+  private final Map<Object, SharedConnection> connections;
+  private final Map<String, Integer> borrowedConnections;
+  private final boolean sharingEnabled;
+  private int depth;
+  private boolean ended;
+
+  private ReportConnectionBroker( final boolean sharingEnabled ) {
+    this.sharingEnabled = sharingEnabled;
+    this.connections = new HashMap<Object, SharedConnection>();
+    this.borrowedConnections = new HashMap<String, Integer>();
+  }
+
+  /**
+   * Starts a report run on the current thread, using the global setting for connection sharing.
+   */
+  public static void begin() {
+    begin( null );
+  }
+
+  /**
+   * Starts a report run on the current thread. Nested calls join the run that is already active.
+   *
+   * @param report the report that is processed, or <code>null</code> to use the global setting for sharing.
+   */
+  public static void begin( final MasterReport report ) {
+    final ReportConnectionBroker current = CURRENT.get();
+    if ( current != null ) {
+      current.depth += 1;
+      return;
+    }
+
+    final ReportConnectionBroker broker = new ReportConnectionBroker( isSharingEnabled( report ) );
+    broker.depth = 1;
+    CURRENT.set( broker );
+  }
+
+  private static boolean isSharingEnabled( final MasterReport report ) {
+    if ( report != null ) {
+      final Object attribute = report.getAttribute( AttributeNames.Pentaho.NAMESPACE, SHARE_CONNECTIONS_ATTRIBUTE );
+      if ( attribute != null ) {
+        return "true".equals( String.valueOf( attribute ) ); // NON-NLS
+      }
+    }
+    return ClassicEngineBoot.getInstance().getExtendedConfig().getBoolProperty( ENABLED_KEY, false );
+  }
+
+  /**
+   * @return true if connection providers should share their connections within this run.
+   */
+  public boolean isSharingEnabled() {
+    return sharingEnabled;
+  }
+
+  /**
+   * Ends the report run on the current thread. Idle shared connections are closed immediately, connections still held
+   * by a data factory are closed as soon as their last handle is closed.
+   */
+  public static void end() {
+    final ReportConnectionBroker current = CURRENT.get();
+    if ( current == null ) {
+      return;
+    }
+    current.depth -= 1;
+    if ( current.depth > 0 ) {
+      return;
+    }
+    CURRENT.remove();
+    current.closeIdleConnections();
+  }
+
+  /**
+   * @return the broker of the report run on the current thread, or <code>null</code> if no run is active.
+   */
+  public static ReportConnectionBroker getCurrent() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Updates the number of connections this report run holds for a data source. Used for connection metrics.
+   *
+   * @param dataSource the name of the data source.
+   * @param delta      the change of the number of connections held.
+   * @return the number of connections the run now holds for the data source.
+   */
+  public synchronized int changeBorrowedConnections( final String dataSource, final int delta ) {
+    final Integer current = borrowedConnections.get( dataSource );
+    final int borrowed = ( current != null ? current : 0 ) + delta;
+    borrowedConnections.put( dataSource, borrowed );
+    return borrowed;
+  }
+
+  /**
+   * Returns a new handle to the connection that has been registered for the given key.
+   *
+   * @param key the data source and credentials the connection has been opened with.
+   * @return a handle or <code>null</code> if there is no usable connection for this key.
+   */
+  public synchronized Connection lookup( final Object key ) {
+    final SharedConnection shared = connections.get( key );
+    if ( shared == null ) {
+      return null;
+    }
+    try {
+      if ( shared.connection.isClosed() ) {
+        connections.remove( key );
+        return null;
+      }
+    } catch ( SQLException e ) {
+      connections.remove( key );
+      return null;
+    }
+    return createHandle( shared );
+  }
+
+  /**
+   * Registers a newly opened connection and returns the handle the caller should use instead.
+   */
+  public synchronized Connection register( final Object key, final Connection connection ) {
+    final SharedConnection shared = new SharedConnection( key, connection );
+    connections.put( key, shared );
+    return createHandle( shared );
+  }
+
+  private Connection createHandle( final SharedConnection shared ) {
+    shared.handles += 1;
+    return (Connection) Proxy.newProxyInstance( Connection.class.getClassLoader(),
+        new Class[] { Connection.class }, new ConnectionHandle( shared ) );
+  }
+
+  private synchronized void release( final SharedConnection shared ) {
+    shared.handles -= 1;
+    if ( shared.handles == 0 && ended ) {
+      closePhysically( shared );
+    }
+  }
+
+  private synchronized void closeIdleConnections() {
+    ended = true;
+    for ( final SharedConnection shared : new ArrayList<SharedConnection>( connections.values() ) ) {
+      if ( shared.handles == 0 ) {
+        closePhysically( shared );
+      }
+    }
+  }
+
+  private void closePhysically( final SharedConnection shared ) {
+    if ( connections.get( shared.key ) == shared ) {
+      connections.remove( shared.key );
+    }
+    try {
+      shared.connection.close();
+    } catch ( SQLException e ) {
+      logger.debug( "Failed to close shared connection", e ); // NON-NLS
+    }
+  }
+}
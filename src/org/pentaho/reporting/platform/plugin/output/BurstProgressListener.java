@@ -0,0 +1,37 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.output;
+
+/**
+ * Receives progress notifications from a {@link ReportBurster}. Notifications arrive from the worker threads that
+ * render the partitions.
+ */
+public interface BurstProgressListener {
+  /**
+   * @param burstKey
+   *          the value of the burst key of the finished partition.
+   * @param finishedPartitions
+   *          the number of partitions finished so far, including this one.
+   * @param totalPartitions
+   *          the number of partitions of the burst.
+   * @param error
+   *          the reason why the partition failed, or null if it was generated successfully.
+   */
+  public void partitionFinished( final Object burstKey, final int finishedPartitions, final int totalPartitions,
+                                 final Throwable error );
+}
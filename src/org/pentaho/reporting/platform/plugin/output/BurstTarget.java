@@ -0,0 +1,64 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Receives the outputs of a {@link ReportBurster}, one per partition. Partitions are rendered in parallel, so
+ * implementations must be thread-safe. The {@link MultiFormatExporter} uses the same contract with the output type as
+ * key.
+ */
+public interface BurstTarget {
+  /**
+   * Opens the stream that receives the output of one partition.
+   *
+   * @param burstKey
+   *          the value of the burst key the partition was built for.
+   * @param mimeType
+   *          the mime-type of the generated output.
+   * @return the stream, never null.
+   * @throws IOException
+   *           if the target cannot accept the partition.
+   */
+  public OutputStream openPartition( final Object burstKey, final String mimeType ) throws IOException;
+
+  /**
+   * Finishes the output of one partition. The target is responsible for closing the stream. If the partition failed,
+   * the partial output should be discarded.
+   *
+   * @param burstKey
+   *          the value of the burst key the partition was built for.
+   * @param mimeType
+   *          the mime-type of the generated output.
+   * @param outputStream
+   *          the stream returned by {@link #openPartition(Object, String)}.
+   * @param successful
+   *          true if the partition has been generated completely.
+   * @throws IOException
+   *           if the output could not be stored or delivered.
+   */
+  public void closePartition( final Object burstKey, final String mimeType, final OutputStream outputStream,
+                              final boolean successful ) throws IOException;
+
+  /**
+   * Called once after all partitions have been processed.
+   */
+  public void close();
+}
@@ -0,0 +1,99 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.pentaho.reporting.platform.plugin.EmailBurstSender;
+import org.pentaho.reporting.platform.plugin.SimpleEmailComponent;
+
+/**
+ * Sends every partition of a burst as an email attachment. The emails are described by {@link SimpleEmailComponent}s
+ * and are sent over the shared connection of an {@link EmailBurstSender}. A partition fails if its email is not valid
+ * or is rejected by the mail server.
+ */
+public class EmailBurstTarget implements BurstTarget {
+  /**
+   * Creates the email for a partition, with recipients, subject and message but without the report attachment.
+   */
+  public static interface EmailFactory {
+    /**
+     * @param burstKey
+     *          the value of the burst key of the partition.
+     * @return the email, or null if the partition is not sent to anyone.
+     */
+    public SimpleEmailComponent createEmail( final Object burstKey ) throws Exception;
+  }
+
+  private final EmailBurstSender sender;
+  private final EmailFactory emailFactory;
+  private final String attachmentBaseName;
+
+  public EmailBurstTarget( final EmailBurstSender sender, final EmailFactory emailFactory,
+                           final String attachmentBaseName ) {
+    if ( sender == null ) {
+      throw new NullPointerException();
+    }
+    if ( emailFactory == null ) {
+      throw new NullPointerException();
+    }
+    if ( attachmentBaseName == null ) {
+      throw new NullPointerException();
+    }
+    this.sender = sender;
+    this.emailFactory = emailFactory;
+    this.attachmentBaseName = attachmentBaseName;
+  }
+
+  public OutputStream openPartition( final Object burstKey, final String mimeType ) throws IOException {
+    return new ByteArrayOutputStream();
+  }
+
+  public void closePartition( final Object burstKey, final String mimeType, final OutputStream outputStream,
+                              final boolean successful ) throws IOException {
+    if ( successful == false ) {
+      return;
+    }
+
+    final byte[] data = ( (ByteArrayOutputStream) outputStream ).toByteArray();
+    try {
+      final SimpleEmailComponent email = emailFactory.createEmail( burstKey );
+      if ( email == null ) {
+        return;
+      }
+      email.addAttachment( RepositoryBurstTarget.computeFileName( attachmentBaseName, burstKey, mimeType ), mimeType,
+          data );
+      if ( email.validate() == false ) {
+        throw new IOException( "Invalid email for burst partition " + burstKey ); //$NON-NLS-1$
+      }
+      if ( sender.send( email.createMessage( sender.getSession() ) ) == false ) {
+        throw new IOException( "Email for burst partition " + burstKey + " was rejected" ); //$NON-NLS-1$
+      }
+    } catch ( IOException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new IOException( "Failed to send email for burst partition " + burstKey, e ); //$NON-NLS-1$
+    }
+  }
+
+  public void close() {
+    sender.close();
+  }
+}
@@ -17,6 +17,7 @@
 
 package org.pentaho.reporting.platform.plugin.output;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -27,6 +28,8 @@ import org.pentaho.reporting.libraries.repository.ContentIOException;
 
 public class FastCSVOutput implements ReportOutputHandler
 {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
   public FastCSVOutput()
   {
   }
@@ -48,7 +51,10 @@ public class FastCSVOutput implements ReportOutputHandler
                       final int yieldRate)
       throws ReportProcessingException, IOException, ContentIOException
   {
-    FastCsvReportUtil.process(report, outputStream);
+    // the fast export writes cell by cell; batch the writes before they reach the (possibly unbuffered) target
+    final BufferedOutputStream bufferedStream = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+    FastCsvReportUtil.process(report, bufferedStream);
+    bufferedStream.flush();
     return 0;
   }
 
@@ -0,0 +1,53 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.output;
+
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+
+/**
+ * Selects the output handler of a fixed output type for a report that is rendered outside of a viewer session.
+ */
+class FixedOutputHandlerSelector implements ReportOutputHandlerSelector {
+  private final MasterReport report;
+  private final String outputType;
+
+  FixedOutputHandlerSelector( final MasterReport report, final String outputType ) {
+    this.report = report;
+    this.outputType = outputType;
+  }
+
+  public String getOutputType() {
+    return outputType;
+  }
+
+  public MasterReport getReport() {
+    return report;
+  }
+
+  public boolean isUseJcrOutput() {
+    return false;
+  }
+
+  public String getJcrOutputPath() {
+    return null;
+  }
+
+  public <T> T getInput( final String parameterName, final T defaultValue, final Class<T> idx ) {
+    return defaultValue;
+  }
+}
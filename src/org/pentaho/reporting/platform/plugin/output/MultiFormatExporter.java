@@ -0,0 +1,171 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.output;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.table.TableModel;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.DataFactory;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.ReportDataFactoryException;
+import org.pentaho.reporting.engine.classic.core.designtime.datafactory.DesignTimeDataFactoryContext;
+import org.pentaho.reporting.engine.classic.core.util.ReportParameterValues;
+import org.pentaho.reporting.engine.classic.core.util.TypedTableModel;
+
+/**
+ * Generates the output of a report in several formats from a single execution of the report's query.
+ * <p/>
+ * The reporting engine binds a report processing run to exactly one output processor, so the layout still runs once
+ * per format. What is shared is the data: the report's query runs once, and every format is rendered from its own copy
+ * of the report, which reads the query result from memory instead of querying the database again. All other queries,
+ * for instance those of parameters and sub-reports, still go to the report's own data factory.
+ * <p/>
+ * The outputs are handed to a {@link BurstTarget}, with the output type as key. A failing format does not affect the
+ * others; its partial output is discarded by the target and the error is returned by {@link #export(BurstTarget)}.
+ */
+public class MultiFormatExporter {
+  private static final Log logger = LogFactory.getLog( MultiFormatExporter.class );
+
+  private final MasterReport report;
+  private final List<String> outputTypes;
+  private int yieldRate;
+
+  /**
+   * @param report
+   *          the report to export, with its parameter values set.
+   */
+  public MultiFormatExporter( final MasterReport report ) {
+    if ( report == null ) {
+      throw new NullPointerException();
+    }
+    this.report = report;
+    this.outputTypes = new ArrayList<String>();
+  }
+
+  /**
+   * Adds a format to generate. Formats are generated in the order they were added.
+   *
+   * @param outputType
+   *          the output target as understood by the {@link ReportOutputHandlerFactory}, for instance the export type of
+   *          the PDF or the XLSX export.
+   */
+  public void addOutputType( final String outputType ) {
+    if ( outputType == null ) {
+      throw new NullPointerException();
+    }
+    if ( outputTypes.contains( outputType ) ) {
+      throw new IllegalArgumentException( "Output type " + outputType + " has already been added" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    outputTypes.add( outputType );
+  }
+
+  public List<String> getOutputTypes() {
+    return Collections.unmodifiableList( outputTypes );
+  }
+
+  public int getYieldRate() {
+    return yieldRate;
+  }
+
+  public void setYieldRate( final int yieldRate ) {
+    this.yieldRate = yieldRate;
+  }
+
+  /**
+   * Runs the report's query once and generates every format into the given target. The target is closed when all
+   * formats have been processed.
+   *
+   * @param target
+   *          the receiver of the outputs.
+   * @return the output types of all failed formats, mapped to the reason of the failure.
+   * @throws ReportDataFactoryException
+   *           if the parameter values are not valid or if the query failed. No output is generated in that case.
+   */
+  public Map<String, Throwable> export( final BurstTarget target ) throws ReportDataFactoryException {
+    try {
+      final ReportParameterValues parameterValues = PrefetchedReportExport.computeParameterValues( report );
+      final TableModel data = query( parameterValues );
+
+      final Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+      for ( final String outputType : outputTypes ) {
+        try {
+          generate( outputType, data, parameterValues, target );
+        } catch ( Exception e ) {
+          logger.warn( "Failed to generate the " + outputType + " output", e ); // NON-NLS
+          failures.put( outputType, e );
+        }
+      }
+      return failures;
+    } finally {
+      target.close();
+    }
+  }
+
+  private TableModel query( final ReportParameterValues parameterValues ) throws ReportDataFactoryException {
+    final DataFactory dataFactory = report.getDataFactory().derive();
+    dataFactory.initialize( new DesignTimeDataFactoryContext( report ) );
+    try {
+      // the result may be backed by the data factory's resources, so it is copied before the factory is closed
+      return copy( dataFactory.queryData( report.getQuery(), parameterValues ) );
+    } finally {
+      dataFactory.close();
+    }
+  }
+
+  private static TableModel copy( final TableModel data ) {
+    final int columnCount = data.getColumnCount();
+    final String[] columnNames = new String[columnCount];
+    final Class[] columnTypes = new Class[columnCount];
+    for ( int column = 0; column < columnCount; column++ ) {
+      columnNames[column] = data.getColumnName( column );
+      columnTypes[column] = data.getColumnClass( column );
+    }
+
+    final TypedTableModel copy = new TypedTableModel( columnNames, columnTypes );
+    final int rowCount = data.getRowCount();
+    for ( int row = 0; row < rowCount; row++ ) {
+      final Object[] rowData = new Object[columnCount];
+      for ( int column = 0; column < columnCount; column++ ) {
+        rowData[column] = data.getValueAt( row, column );
+      }
+      copy.addRow( rowData );
+    }
+    return copy;
+  }
+
+  private void generate( final String outputType, final TableModel data, final ReportParameterValues parameterValues,
+                         final BurstTarget target ) throws Exception {
+    final MasterReport formatReport = PrefetchedReportExport.deriveWithData( report, data, parameterValues );
+    final String mimeType = PrefetchedReportExport.getMimeType( formatReport, outputType );
+    final OutputStream outputStream = target.openPartition( outputType, mimeType );
+    boolean successful = false;
+    try {
+      PrefetchedReportExport.generate( formatReport, outputType, outputStream, yieldRate );
+      successful = true;
+    } finally {
+      target.closePartition( outputType, mimeType, outputStream, successful );
+    }
+  }
+}
@@ -20,14 +20,51 @@ package org.pentaho.reporting.platform.plugin.output;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.pentaho.reporting.engine.classic.core.MasterReport;
 import org.pentaho.reporting.engine.classic.core.ReportProcessingException;
+import org.pentaho.reporting.engine.classic.core.event.ReportProgressEvent;
+import org.pentaho.reporting.engine.classic.core.event.ReportProgressListener;
 import org.pentaho.reporting.engine.classic.core.layout.output.YieldReportListener;
 import org.pentaho.reporting.engine.classic.core.modules.output.pageable.base.PageableReportProcessor;
 import org.pentaho.reporting.engine.classic.core.modules.output.pageable.pdf.PdfOutputProcessor;
 import org.pentaho.reporting.libraries.repository.ContentIOException;
 
 public class PDFOutput implements ReportOutputHandler {
+  /**
+   * Flushes the output stream whenever a page has been completed, so that with THRU staging the client receives the
+   * document as it is produced instead of whenever the container's buffer happens to fill up.
+   */
+  private static class PageFlushListener implements ReportProgressListener {
+    private final OutputStream outputStream;
+    private int lastPage;
+
+    private PageFlushListener( final OutputStream outputStream ) {
+      this.outputStream = outputStream;
+    }
+
+    public void reportProcessingStarted( final ReportProgressEvent event ) {
+    }
+
+    public void reportProcessingUpdate( final ReportProgressEvent event ) {
+      if ( event.getActivity() != ReportProgressEvent.GENERATING_CONTENT || event.getPage() == lastPage ) {
+        return;
+      }
+      lastPage = event.getPage();
+      try {
+        outputStream.flush();
+      } catch ( IOException e ) {
+        logger.debug( "Failed to flush completed PDF pages", e ); // NON-NLS
+      }
+    }
+
+    public void reportProcessingFinished( final ReportProgressEvent event ) {
+    }
+  }
+
+  private static final Log logger = LogFactory.getLog( PDFOutput.class );
+
   public PDFOutput() {
   }
 
@@ -42,6 +79,7 @@ public class PDFOutput implements ReportOutputHandler {
     if ( yieldRate > 0 ) {
       proc.addReportProgressListener( new YieldReportListener( yieldRate ) );
     }
+    proc.addReportProgressListener( new PageFlushListener( outputStream ) );
     return proc;
   }
 
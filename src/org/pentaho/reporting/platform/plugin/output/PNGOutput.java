@@ -24,17 +24,47 @@ import java.awt.image.BufferedImage;
 import java.awt.print.PageFormat;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
 import org.pentaho.reporting.engine.classic.core.MasterReport;
 import org.pentaho.reporting.engine.classic.core.ReportProcessingException;
 import org.pentaho.reporting.engine.classic.core.layout.output.YieldReportListener;
 import org.pentaho.reporting.engine.classic.core.modules.output.pageable.graphics.PageDrawable;
 import org.pentaho.reporting.engine.classic.core.modules.output.pageable.graphics.PrintReportProcessor;
+import org.pentaho.reporting.libraries.base.config.ExtendedConfiguration;
 import org.pentaho.reporting.libraries.base.util.PngEncoder;
 import org.pentaho.reporting.libraries.repository.ContentIOException;
+import org.pentaho.reporting.libraries.xmlns.common.ParserUtil;
 
+/**
+ * Renders single report pages as PNG images. Encoded pages are kept in a small cache on the handler, so that preview
+ * and thumbnail views that request the same pages repeatedly do not re-render them.
+ * <p/>
+ * Scale, PNG compression level and cache size are configurable through the global report configuration.
+ */
 public class PNGOutput implements ReportOutputHandler {
+  private static final String PREFIX = "org.pentaho.reporting.platform.plugin.output.PNGOutput.";
+  private static final String COMPRESSION_KEY = PREFIX + "CompressionLevel";
+  private static final String SCALE_KEY = PREFIX + "Scale";
+  private static final String CACHE_SIZE_KEY = PREFIX + "CacheSize";
+
+  private static class PageImageCache extends LinkedHashMap<Integer, byte[]> {
+    private final int maximumSize;
+
+    private PageImageCache( final int maximumSize ) {
+      super( 16, 0.75f, true );
+      this.maximumSize = maximumSize;
+    }
+
+    protected boolean removeEldestEntry( final Map.Entry<Integer, byte[]> eldest ) {
+      return size() > maximumSize;
+    }
+  }
+
   private transient PrintReportProcessor proc;
+  private transient PageImageCache pageCache;
 
   public PNGOutput() {
   }
@@ -69,25 +99,23 @@ public class PNGOutput implements ReportOutputHandler {
     }
     final int pageCount = proc.getNumberOfPages();
 
-    if ( pageCount <= acceptedPage ) {
+    if ( acceptedPage < 0 || pageCount <= acceptedPage ) {
       return -1;
     }
 
-    final BufferedImage image = createImage( proc.getPageFormat( acceptedPage ) );
-
-    final Rectangle rect = new Rectangle( 0, 0, image.getWidth(), image.getHeight() );
-    // prepare the image by filling it ...
-    final Graphics2D g2 = image.createGraphics();
-    g2.setPaint( Color.white );
-    g2.fill( rect );
-
-    final PageDrawable pageDrawable = proc.getPageDrawable( acceptedPage );
-    pageDrawable.draw( g2, rect );
-    g2.dispose();
+    final ExtendedConfiguration config = ClassicEngineBoot.getInstance().getExtendedConfig();
+    if ( pageCache == null ) {
+      pageCache = new PageImageCache( Math.max( 0, config.getIntProperty( CACHE_SIZE_KEY, 20 ) ) );
+    }
 
-    // convert to PNG ...
-    final PngEncoder encoder = new PngEncoder( image, true, 0, 9 );
-    final byte[] data = encoder.pngEncode();
+    byte[] data = pageCache.get( acceptedPage );
+    if ( data == null ) {
+      final double scale = ParserUtil.parseFloat( config.getConfigProperty( SCALE_KEY ), 1f );
+      final int compressionLevel = Math.max( 0, Math.min( 9, config.getIntProperty( COMPRESSION_KEY, 9 ) ) );
+      data = renderPage( proc.getPageFormat( acceptedPage ), proc.getPageDrawable( acceptedPage ), scale,
+          compressionLevel );
+      pageCache.put( acceptedPage, data );
+    }
 
     outputStream.write( data );
     outputStream.flush();
@@ -104,15 +132,34 @@ public class PNGOutput implements ReportOutputHandler {
     return proc;
   }
 
+  private static byte[] renderPage( final PageFormat pageFormat, final PageDrawable pageDrawable, final double scale,
+                                    final int compressionLevel ) {
+    final BufferedImage image = createImage( pageFormat, scale );
+
+    // prepare the image by filling it ...
+    final Graphics2D g2 = image.createGraphics();
+    g2.setPaint( Color.white );
+    g2.fill( new Rectangle( 0, 0, image.getWidth(), image.getHeight() ) );
+
+    g2.scale( scale, scale );
+    final Rectangle rect = new Rectangle( 0, 0, (int) pageFormat.getWidth(), (int) pageFormat.getHeight() );
+    pageDrawable.draw( g2, rect );
+    g2.dispose();
+
+    // convert to PNG ...
+    final PngEncoder encoder = new PngEncoder( image, true, 0, compressionLevel );
+    return encoder.pngEncode();
+  }
+
   /**
    * Create the empty image for the given page size.
    * 
    * @return the generated image.
    */
-  private static BufferedImage createImage( final PageFormat pf ) {
+  private static BufferedImage createImage( final PageFormat pf, final double scale ) {
     // in this simple case we know, that all pages have the same size..
-    final double width = pf.getWidth();
-    final double height = pf.getHeight();
+    final double width = pf.getWidth() * scale;
+    final double height = pf.getHeight() * scale;
     // write the report to the temp file
     return new BufferedImage( (int) width, (int) height, BufferedImage.TYPE_BYTE_INDEXED );
   }
@@ -0,0 +1,131 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.swing.table.TableModel;
+
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.reporting.engine.classic.core.AttributeNames;
+import org.pentaho.reporting.engine.classic.core.CompoundDataFactory;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.ReportDataFactoryException;
+import org.pentaho.reporting.engine.classic.core.ReportProcessingException;
+import org.pentaho.reporting.engine.classic.core.TableDataFactory;
+import org.pentaho.reporting.engine.classic.core.parameters.DefaultParameterContext;
+import org.pentaho.reporting.engine.classic.core.parameters.ReportParameterDefinition;
+import org.pentaho.reporting.engine.classic.core.parameters.ValidationResult;
+import org.pentaho.reporting.engine.classic.core.util.ReportParameterValues;
+
+/**
+ * Shared code of the exporters that run the report's query once and render the result several times.
+ */
+final class PrefetchedReportExport {
+  private PrefetchedReportExport() {
+  }
+
+  /**
+   * Validates the report's parameter values the same way a regular report run does, which also fills in the default
+   * values of parameters that have not been set.
+   */
+  static ReportParameterValues computeParameterValues( final MasterReport report ) throws ReportDataFactoryException {
+    try {
+      final DefaultParameterContext parameterContext = new DefaultParameterContext( report );
+      try {
+        final ReportParameterDefinition definition = report.getParameterDefinition();
+        final ValidationResult result =
+            definition.getValidator().validate( new ValidationResult(), definition, parameterContext );
+        if ( result.isEmpty() == false ) {
+          throw new ReportDataFactoryException( "The report's parameter values are not valid" ); //$NON-NLS-1$
+        }
+        return result.getParameterValues();
+      } finally {
+        parameterContext.close();
+      }
+    } catch ( ReportDataFactoryException e ) {
+      throw e;
+    } catch ( ReportProcessingException e ) {
+      throw new ReportDataFactoryException( "Failed to validate the report's parameter values", e ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Creates a copy of the report that reads the given rows for the report's query. All other queries, for instance
+   * those of parameters and sub-reports, still go to the report's own data factory.
+   */
+  static MasterReport deriveWithData( final MasterReport report, final TableModel data,
+                                      final ReportParameterValues parameterValues ) {
+    final MasterReport derivedReport;
+    synchronized ( report ) {
+      // cloning reads the report definition; workers copy it one at a time
+      derivedReport = (MasterReport) report.derive();
+    }
+    final CompoundDataFactory dataFactory = new CompoundDataFactory();
+    dataFactory.add( new TableDataFactory( report.getQuery(), data ) );
+    dataFactory.add( derivedReport.getDataFactory() );
+    derivedReport.setDataFactory( dataFactory );
+    // the data is already in memory, caching it for the session would only waste memory
+    derivedReport.setAttribute( AttributeNames.Core.NAMESPACE, AttributeNames.Core.DATA_CACHE, Boolean.FALSE );
+    for ( final String name : parameterValues.getColumnNames() ) {
+      derivedReport.getParameterValues().put( name, parameterValues.get( name ) );
+    }
+    return derivedReport;
+  }
+
+  static ReportOutputHandlerFactory getHandlerFactory() {
+    final ReportOutputHandlerFactory handlerFactory = PentahoSystem.get( ReportOutputHandlerFactory.class );
+    if ( handlerFactory == null ) {
+      return new FastExportReportOutputHandlerFactory();
+    }
+    return handlerFactory;
+  }
+
+  static String getMimeType( final MasterReport report, final String outputType ) {
+    return getHandlerFactory().getMimeType( new FixedOutputHandlerSelector( report, outputType ) );
+  }
+
+  /**
+   * Renders the report with the output handler of the given output type. The stream is flushed, but not closed.
+   */
+  static void generate( final MasterReport report, final String outputType, final OutputStream outputStream,
+                        final int yieldRate ) throws ReportProcessingException, IOException {
+    ReportOutputHandler outputHandler = null;
+    try {
+      outputHandler =
+          getHandlerFactory().createOutputHandlerForOutputType( new FixedOutputHandlerSelector( report, outputType ) );
+      if ( outputHandler == null ) {
+        throw new ReportProcessingException( "Unsupported output type " + outputType ); //$NON-NLS-1$
+      }
+      synchronized ( outputHandler.getReportLock() ) {
+        outputHandler.generate( report, -1, outputStream, yieldRate );
+      }
+      outputStream.flush();
+    } catch ( ReportProcessingException e ) {
+      throw e;
+    } catch ( IOException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new ReportProcessingException( "Failed to generate the " + outputType + " output", e ); //$NON-NLS-1$ //$NON-NLS-2$
+    } finally {
+      if ( outputHandler != null ) {
+        outputHandler.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,361 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.table.TableModel;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.DataFactory;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.ReportDataFactoryException;
+import org.pentaho.reporting.engine.classic.core.ReportProcessingException;
+import org.pentaho.reporting.engine.classic.core.designtime.datafactory.DesignTimeDataFactoryContext;
+import org.pentaho.reporting.engine.classic.core.util.ReportParameterValues;
+import org.pentaho.reporting.engine.classic.core.util.TypedTableModel;
+
+/**
+ * Generates one output per value of a burst key from a single execution of the report's query. The query result is
+ * split into partitions of rows sharing the same burst key value. Each partition is rendered from its own copy of the
+ * report, which reads the partition's rows for the report's query instead of querying the database again, with the
+ * regular output handlers on a bounded pool of worker threads. All other queries, for instance those of parameters and
+ * sub-reports, still go to the report's own data factory.
+ * <p/>
+ * A failing partition does not affect the others; its partial output is discarded by the {@link BurstTarget} and the
+ * error is reported in the {@link Result} and to the {@link BurstProgressListener}s.
+ * <p/>
+ * The report's query must return all rows of all partitions for the report's current parameter values, which are
+ * validated and completed with the parameters' defaults before the query runs. If the report defines a parameter named
+ * like the burst key, each partition's report sees the partition's key as value of that parameter.
+ */
+public class ReportBurster {
+  private static final Log logger = LogFactory.getLog( ReportBurster.class );
+  private static final String THREADS_KEY = "org.pentaho.reporting.platform.plugin.output.ReportBurster.Threads";
+
+  /**
+   * The outcome of a burst.
+   */
+  public static class Result {
+    private final List<Object> partitionKeys;
+    private final Map<Object, Throwable> failures;
+    private final long duration;
+
+    private Result( final List<Object> partitionKeys, final Map<Object, Throwable> failures, final long duration ) {
+      this.partitionKeys = Collections.unmodifiableList( partitionKeys );
+      this.failures = Collections.unmodifiableMap( failures );
+      this.duration = duration;
+    }
+
+    /**
+     * @return the burst keys of all partitions, in the order of their first row in the query result.
+     */
+    public List<Object> getPartitionKeys() {
+      return partitionKeys;
+    }
+
+    public int getPartitionCount() {
+      return partitionKeys.size();
+    }
+
+    public int getSuccessCount() {
+      return partitionKeys.size() - failures.size();
+    }
+
+    /**
+     * @return the burst keys of all failed partitions, mapped to the reason of the failure.
+     */
+    public Map<Object, Throwable> getFailures() {
+      return failures;
+    }
+
+    /**
+     * @return the time taken by the whole burst, including the query, in milliseconds.
+     */
+    public long getDuration() {
+      return duration;
+    }
+
+    public double getPartitionsPerSecond() {
+      if ( duration <= 0 ) {
+        return partitionKeys.size();
+      }
+      return partitionKeys.size() * 1000.0 / duration;
+    }
+  }
+
+  private final MasterReport report;
+  private final String burstKey;
+  private final String outputType;
+  private final List<BurstProgressListener> progressListeners;
+  private int threads;
+  private int yieldRate;
+
+  /**
+   * @param report
+   *          the report to burst, with its parameter values set.
+   * @param burstKey
+   *          the name of the column of the report's query that the rows are partitioned by.
+   * @param outputType
+   *          the output target of the outputs as understood by the {@link ReportOutputHandlerFactory}, for instance
+   *          the export type of the PDF or the XLSX export.
+   */
+  public ReportBurster( final MasterReport report, final String burstKey, final String outputType ) {
+    if ( report == null ) {
+      throw new NullPointerException();
+    }
+    if ( burstKey == null ) {
+      throw new NullPointerException();
+    }
+    if ( outputType == null ) {
+      throw new NullPointerException();
+    }
+    this.report = report;
+    this.burstKey = burstKey;
+    this.outputType = outputType;
+    this.progressListeners = new ArrayList<BurstProgressListener>();
+    this.threads = ClassicEngineBoot.getInstance().getExtendedConfig().getIntProperty( THREADS_KEY, 4 );
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads( final int threads ) {
+    this.threads = threads;
+  }
+
+  public int getYieldRate() {
+    return yieldRate;
+  }
+
+  public void setYieldRate( final int yieldRate ) {
+    this.yieldRate = yieldRate;
+  }
+
+  public void addProgressListener( final BurstProgressListener listener ) {
+    if ( listener == null ) {
+      throw new NullPointerException();
+    }
+    progressListeners.add( listener );
+  }
+
+  /**
+   * Runs the report's query once and generates the output of every partition into the given target. The target is
+   * closed when all partitions have been processed.
+   *
+   * @param target
+   *          the receiver of the outputs.
+   * @return the outcome of the burst.
+   * @throws ReportDataFactoryException
+   *           if the parameter values are not valid, or if the query failed or does not return the burst key column. No
+   *           partition is generated in that case.
+   */
+  public Result burst( final BurstTarget target ) throws ReportDataFactoryException {
+    final long startTime = System.currentTimeMillis();
+    try {
+      final ReportParameterValues parameterValues = PrefetchedReportExport.computeParameterValues( report );
+      final Map<Object, TableModel> partitions = queryPartitions( parameterValues );
+      final Map<Object, Throwable> failures = generatePartitions( partitions, parameterValues, target );
+      final Result result = new Result( new ArrayList<Object>( partitions.keySet() ), failures,
+          System.currentTimeMillis() - startTime );
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Burst of " + result.getPartitionCount() + " partitions finished in " // NON-NLS
+            + result.getDuration() + "ms, " + failures.size() + " failed" ); // NON-NLS
+      }
+      return result;
+    } finally {
+      target.close();
+    }
+  }
+
+  private Map<Object, TableModel> queryPartitions( final ReportParameterValues parameterValues )
+    throws ReportDataFactoryException {
+    final DataFactory dataFactory = report.getDataFactory().derive();
+    dataFactory.initialize( new DesignTimeDataFactoryContext( report ) );
+    try {
+      // the result may be backed by the data factory's resources, so it is copied before the factory is closed
+      return partition( dataFactory.queryData( report.getQuery(), parameterValues ) );
+    } finally {
+      dataFactory.close();
+    }
+  }
+
+  private Map<Object, TableModel> partition( final TableModel data ) throws ReportDataFactoryException {
+    final int columnCount = data.getColumnCount();
+    final String[] columnNames = new String[columnCount];
+    final Class[] columnTypes = new Class[columnCount];
+    int keyColumn = -1;
+    for ( int column = 0; column < columnCount; column++ ) {
+      columnNames[column] = data.getColumnName( column );
+      columnTypes[column] = data.getColumnClass( column );
+      if ( burstKey.equals( columnNames[column] ) ) {
+        keyColumn = column;
+      }
+    }
+    if ( keyColumn == -1 ) {
+      throw new ReportDataFactoryException( "The query does not return the burst key column " + burstKey ); //$NON-NLS-1$
+    }
+
+    final LinkedHashMap<Object, TableModel> partitions = new LinkedHashMap<Object, TableModel>();
+    final int rowCount = data.getRowCount();
+    for ( int row = 0; row < rowCount; row++ ) {
+      final Object key = data.getValueAt( row, keyColumn );
+      TypedTableModel partition = (TypedTableModel) partitions.get( key );
+      if ( partition == null ) {
+        partition = new TypedTableModel( columnNames, columnTypes );
+        partitions.put( key, partition );
+      }
+      final Object[] rowData = new Object[columnCount];
+      for ( int column = 0; column < columnCount; column++ ) {
+        rowData[column] = data.getValueAt( row, column );
+      }
+      partition.addRow( rowData );
+    }
+    return partitions;
+  }
+
+  private Map<Object, Throwable> generatePartitions( final Map<Object, TableModel> partitions,
+                                                     final ReportParameterValues parameterValues,
+                                                     final BurstTarget target ) {
+    final Map<Object, Throwable> failures = Collections.synchronizedMap( new LinkedHashMap<Object, Throwable>() );
+    if ( partitions.isEmpty() ) {
+      return failures;
+    }
+
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    final int[] finished = new int[1];
+    final Set<Object> succeeded = Collections.synchronizedSet( new HashSet<Object>() );
+    final ExecutorService pool = Executors.newFixedThreadPool( Math.max( 1, Math.min( threads, partitions.size() ) ),
+        new ThreadFactory() {
+          public Thread newThread( final Runnable r ) {
+            final Thread thread = new Thread( r, "Report burst worker" ); // NON-NLS
+            thread.setDaemon( true );
+            return thread;
+          }
+        } );
+    try {
+      final List<Future<Object>> futures = new ArrayList<Future<Object>>( partitions.size() );
+      for ( final Map.Entry<Object, TableModel> entry : partitions.entrySet() ) {
+        futures.add( pool.submit( new Callable<Object>() {
+          public Object call() {
+            PentahoSessionHolder.setSession( session );
+            Throwable error = null;
+            try {
+              generatePartition( entry.getKey(), entry.getValue(), parameterValues, target );
+              succeeded.add( entry.getKey() );
+            } catch ( Throwable t ) {
+              logger.warn( "Failed to generate burst partition " + entry.getKey(), t ); // NON-NLS
+              failures.put( entry.getKey(), t );
+              error = t;
+            } finally {
+              PentahoSessionHolder.removeSession();
+            }
+
+            final int finishedPartitions;
+            synchronized ( finished ) {
+              finished[0] += 1;
+              finishedPartitions = finished[0];
+            }
+            fireProgress( entry.getKey(), finishedPartitions, partitions.size(), error );
+            return null;
+          }
+        } ) );
+      }
+
+      for ( final Future<Object> future : futures ) {
+        try {
+          future.get();
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+          // partitions that have not finished yet will not be generated, they count as failed
+          synchronized ( failures ) {
+            final Map<Object, Throwable> result = new LinkedHashMap<Object, Throwable>( failures );
+            for ( final Object key : partitions.keySet() ) {
+              if ( succeeded.contains( key ) == false && result.containsKey( key ) == false ) {
+                result.put( key, e );
+              }
+            }
+            return result;
+          }
+        } catch ( ExecutionException e ) {
+          // partition failures are recorded by the task itself
+          logger.debug( "Burst worker failed", e ); // NON-NLS
+        }
+      }
+      synchronized ( failures ) {
+        return new LinkedHashMap<Object, Throwable>( failures );
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private void fireProgress( final Object key, final int finishedPartitions, final int totalPartitions,
+                             final Throwable error ) {
+    for ( final BurstProgressListener listener : progressListeners ) {
+      try {
+        listener.partitionFinished( key, finishedPartitions, totalPartitions, error );
+      } catch ( RuntimeException e ) {
+        logger.warn( "Burst progress listener failed", e ); // NON-NLS
+      }
+    }
+  }
+
+  private void generatePartition( final Object key, final TableModel data,
+                                  final ReportParameterValues parameterValues, final BurstTarget target )
+    throws ReportProcessingException, IOException {
+    // the partition's rows answer the report's query, everything else still goes to the report's own data factory
+    final MasterReport partitionReport = PrefetchedReportExport.deriveWithData( report, data, parameterValues );
+    if ( partitionReport.getParameterDefinition() != null ) {
+      final int parameterCount = partitionReport.getParameterDefinition().getParameterCount();
+      for ( int i = 0; i < parameterCount; i++ ) {
+        if ( burstKey.equals( partitionReport.getParameterDefinition().getParameterDefinition( i ).getName() ) ) {
+          partitionReport.getParameterValues().put( burstKey, key );
+        }
+      }
+    }
+
+    final String mimeType = PrefetchedReportExport.getMimeType( partitionReport, outputType );
+    final OutputStream outputStream = target.openPartition( key, mimeType );
+    boolean successful = false;
+    try {
+      PrefetchedReportExport.generate( partitionReport, outputType, outputStream, yieldRate );
+      successful = true;
+    } finally {
+      target.closePartition( key, mimeType, outputStream, successful );
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.pentaho.platform.repository2.unified.fileio.RepositoryFileOutputStream;
+import org.pentaho.platform.util.web.MimeHelper;
+
+/**
+ * Stores every partition of a burst as a file in a repository folder. The file name is built from a base name and
+ * the partition's burst key; keys that map to the same file name, such as "a/b" and "a_b", are told apart by a
+ * numeric suffix. The output of failed partitions is never written to the repository.
+ */
+public class RepositoryBurstTarget implements BurstTarget {
+  private final String folderPath;
+  private final String baseName;
+  private final Set<String> usedFileNames;
+  private final Map<Object, String> fileNames;
+
+  /**
+   * @param folderPath
+   *          the repository path of the folder receiving the files.
+   * @param baseName
+   *          the prefix of all file names.
+   */
+  public RepositoryBurstTarget( final String folderPath, final String baseName ) {
+    if ( folderPath == null ) {
+      throw new NullPointerException();
+    }
+    if ( baseName == null ) {
+      throw new NullPointerException();
+    }
+    this.folderPath = folderPath;
+    this.baseName = baseName;
+    this.usedFileNames = new HashSet<String>();
+    this.fileNames = new HashMap<Object, String>();
+  }
+
+  public OutputStream openPartition( final Object burstKey, final String mimeType ) throws IOException {
+    return new RepositoryFileOutputStream( folderPath + "/" + allocateFileName( burstKey, mimeType ) );
+  }
+
+  /**
+   * Returns a file name for the partition that no other partition of this burst uses.
+   */
+  protected synchronized String allocateFileName( final Object burstKey, final String mimeType ) {
+    final String name = computeName( baseName, burstKey );
+    final String extension = computeExtension( mimeType );
+    String fileName = name + extension;
+    for ( int suffix = 2; usedFileNames.add( fileName ) == false; suffix++ ) {
+      fileName = name + "-" + suffix + extension;
+    }
+    fileNames.put( burstKey, fileName );
+    return fileName;
+  }
+
+  /**
+   * @return the repository path of the file of the given partition, or <code>null</code> if the partition has not been
+   *         opened.
+   */
+  public synchronized String getFilePath( final Object burstKey ) {
+    final String fileName = fileNames.get( burstKey );
+    if ( fileName == null ) {
+      return null;
+    }
+    return folderPath + "/" + fileName;
+  }
+
+  public void closePartition( final Object burstKey, final String mimeType, final OutputStream outputStream,
+                              final boolean successful ) throws IOException {
+    if ( successful ) {
+      // the repository file is created with its content when the stream is closed
+      outputStream.close();
+    }
+  }
+
+  public void close() {
+  }
+
+  /**
+   * Computes a file name for a partition that is safe to use in the repository. Different keys may result in the same
+   * name.
+   */
+  public static String computeFileName( final String baseName, final Object burstKey, final String mimeType ) {
+    return computeName( baseName, burstKey ) + computeExtension( mimeType );
+  }
+
+  private static String computeName( final String baseName, final Object burstKey ) {
+    final String key = String.valueOf( burstKey );
+    final StringBuilder b = new StringBuilder( baseName.length() + key.length() + 1 );
+    b.append( baseName );
+    b.append( '-' );
+    for ( int i = 0; i < key.length(); i++ ) {
+      final char c = key.charAt( i );
+      if ( Character.isLetterOrDigit( c ) || c == '-' || c == '_' || c == '.' ) {
+        b.append( c );
+      } else {
+        b.append( '_' );
+      }
+    }
+    return b.toString();
+  }
+
+  /**
+   * @return the file extension of the given mime-type including the leading dot, or an empty string if the mime-type
+   *         is unknown.
+   */
+  public static String computeExtension( final String mimeType ) {
+    final String extension = MimeHelper.getExtension( mimeType );
+    if ( extension == null || extension.length() == 0 ) {
+      return "";
+    }
+    if ( extension.charAt( 0 ) != '.' ) {
+      return "." + extension;
+    }
+    return extension;
+  }
+}
@@ -0,0 +1,165 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.libraries.base.util.IOUtils;
+
+/**
+ * Keeps one copy of each Excel workbook template that is in use. Templates arrive as streams for each export, so
+ * they still have to be read, but reports that share a template also share the template's bytes instead of holding a
+ * private copy in every cached output handler. Templates are identified by a SHA-1 hash of their content, which is
+ * computed while the stream is read, so the registry lock only guards the lookup itself.
+ * <p/>
+ * The registry only holds weak references: a template is dropped as soon as no output handler uses it any longer, and
+ * at most <code>CacheSize</code> templates are tracked at any time. The returned arrays are shared and must not be
+ * modified.
+ */
+public final class WorkbookTemplateRegistry {
+  private static final String CACHE_SIZE_KEY =
+      "org.pentaho.reporting.platform.plugin.output.WorkbookTemplateRegistry.CacheSize";
+  private static final int DEFAULT_CACHE_SIZE = 20;
+
+  private static class TemplateCache extends LinkedHashMap<String, WeakReference<byte[]>> {
+    private final int maximumSize;
+
+    private TemplateCache( final int maximumSize ) {
+      super( 16, 0.75f, true );
+      this.maximumSize = maximumSize;
+    }
+
+    protected boolean removeEldestEntry( final Map.Entry<String, WeakReference<byte[]>> eldest ) {
+      return size() > maximumSize;
+    }
+
+    private void purgeCollected() {
+      final Iterator<WeakReference<byte[]>> it = values().iterator();
+      while ( it.hasNext() ) {
+        if ( it.next().get() == null ) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  private static WorkbookTemplateRegistry instance;
+
+  private final TemplateCache templates;
+
+  private WorkbookTemplateRegistry( final int cacheSize ) {
+    templates = new TemplateCache( Math.max( 0, cacheSize ) );
+  }
+
+  public static synchronized WorkbookTemplateRegistry getInstance() {
+    if ( instance == null ) {
+      final int cacheSize =
+          ClassicEngineBoot.getInstance().getExtendedConfig().getIntProperty( CACHE_SIZE_KEY, DEFAULT_CACHE_SIZE );
+      instance = new WorkbookTemplateRegistry( cacheSize );
+    }
+    return instance;
+  }
+
+  /**
+   * Reads and closes the given stream and returns the shared copy of its content.
+   *
+   * @return the template data, or <code>null</code> if the stream is <code>null</code>.
+   */
+  public byte[] getTemplateData( final InputStream templateInputStream ) throws IOException {
+    if ( templateInputStream == null ) {
+      return null;
+    }
+
+    final MessageDigest digest = createDigest();
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    try {
+      IOUtils.getInstance().copyStreams( new DigestInputStream( templateInputStream, digest ), bout );
+    } finally {
+      templateInputStream.close();
+    }
+
+    final String key = toHex( digest.digest() );
+    synchronized ( templates ) {
+      final WeakReference<byte[]> reference = templates.get( key );
+      if ( reference != null ) {
+        final byte[] known = reference.get();
+        if ( known != null ) {
+          return known;
+        }
+      }
+    }
+
+    final byte[] data = bout.toByteArray();
+    synchronized ( templates ) {
+      templates.purgeCollected();
+      final WeakReference<byte[]> reference = templates.get( key );
+      if ( reference != null ) {
+        // another export registered the same template while the data was copied
+        final byte[] known = reference.get();
+        if ( known != null ) {
+          return known;
+        }
+      }
+      templates.put( key, new WeakReference<byte[]>( data ) );
+      return data;
+    }
+  }
+
+  public void clear() {
+    synchronized ( templates ) {
+      templates.clear();
+    }
+  }
+
+  public int size() {
+    synchronized ( templates ) {
+      templates.purgeCollected();
+      return templates.size();
+    }
+  }
+
+  private static MessageDigest createDigest() throws IOException {
+    try {
+      return MessageDigest.getInstance( "SHA-1" ); // NON-NLS
+    } catch ( NoSuchAlgorithmException e ) {
+      throw new IOException( "SHA-1 is not available" );
+    }
+  }
+
+  private static String toHex( final byte[] bytes ) {
+    final StringBuilder b = new StringBuilder( bytes.length * 2 );
+    for ( final byte value : bytes ) {
+      final int v = value & 0xff;
+      if ( v < 16 ) {
+        b.append( '0' );
+      }
+      b.append( Integer.toHexString( v ) );
+    }
+    return b.toString();
+  }
+}
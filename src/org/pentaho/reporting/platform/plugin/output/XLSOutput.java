@@ -18,7 +18,6 @@
 package org.pentaho.reporting.platform.plugin.output;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -28,7 +27,6 @@ import org.pentaho.reporting.engine.classic.core.ReportProcessingException;
 import org.pentaho.reporting.engine.classic.core.layout.output.YieldReportListener;
 import org.pentaho.reporting.engine.classic.core.modules.output.table.base.FlowReportProcessor;
 import org.pentaho.reporting.engine.classic.core.modules.output.table.xls.FlowExcelOutputProcessor;
-import org.pentaho.reporting.libraries.base.util.IOUtils;
 import org.pentaho.reporting.libraries.repository.ContentIOException;
 
 public class XLSOutput implements ReportOutputHandler {
@@ -38,20 +36,8 @@ public class XLSOutput implements ReportOutputHandler {
   public XLSOutput() {
   }
 
-  public void setTemplateDataFromStream(final InputStream templateInputStream ) throws IOException
-  {
-    if ( templateInputStream != null ) {
-      final ByteArrayOutputStream bout = new ByteArrayOutputStream();
-      try {
-        IOUtils.getInstance().copyStreams( templateInputStream, bout );
-      } finally {
-        templateInputStream.close();
-      }
-      templateData = bout.toByteArray();
-    }
-    else {
-      templateData = null;
-    }
+  public void setTemplateDataFromStream( final InputStream templateInputStream ) throws IOException {
+    templateData = WorkbookTemplateRegistry.getInstance().getTemplateData( templateInputStream );
   }
 
   public byte[] getTemplateData()
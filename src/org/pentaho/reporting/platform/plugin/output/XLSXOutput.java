@@ -18,7 +18,6 @@
 package org.pentaho.reporting.platform.plugin.output;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -28,9 +27,13 @@ import org.pentaho.reporting.engine.classic.core.ReportProcessingException;
 import org.pentaho.reporting.engine.classic.core.layout.output.YieldReportListener;
 import org.pentaho.reporting.engine.classic.core.modules.output.table.base.FlowReportProcessor;
 import org.pentaho.reporting.engine.classic.core.modules.output.table.xls.FlowExcelOutputProcessor;
-import org.pentaho.reporting.libraries.base.util.IOUtils;
 import org.pentaho.reporting.libraries.repository.ContentIOException;
 
+/**
+ * Exports the report as Excel 2007 workbook. The workbook is built by the engine's Excel printer, which keeps the
+ * complete sheet model in memory until the report has been processed; memory use therefore grows with the number of
+ * exported cells and cannot be bounded from this handler.
+ */
 public class XLSXOutput implements ReportOutputHandler {
   private byte[] templateData;
   private ProxyOutputStream proxyOutputStream;
@@ -40,15 +43,7 @@ public class XLSXOutput implements ReportOutputHandler {
   }
 
   public void setTemplateDataFromStream( final InputStream templateInputStream ) throws IOException {
-    if ( templateInputStream != null ) {
-      final ByteArrayOutputStream bout = new ByteArrayOutputStream();
-      try {
-        IOUtils.getInstance().copyStreams( templateInputStream, bout );
-      } finally {
-        templateInputStream.close();
-      }
-      templateData = bout.toByteArray();
-    }
+    templateData = WorkbookTemplateRegistry.getInstance().getTemplateData( templateInputStream );
   }
 
   public byte[] getTemplateData()
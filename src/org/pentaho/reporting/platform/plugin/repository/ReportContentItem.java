@@ -17,6 +17,7 @@
 
 package org.pentaho.reporting.platform.plugin.repository;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -41,14 +42,42 @@ public class ReportContentItem implements ContentItem {
 
   private ReportContentLocation parent;
   private RepositoryFile file;
+  private String path;
+  private String name;
+  private boolean hidden;
   private String mimeType;
 
   public ReportContentItem( final RepositoryFile file, final ReportContentLocation parent, final String mimeType ) {
     this.file = file;
+    this.path = file.getPath();
+    this.name = file.getName();
+    this.hidden = file.isHidden();
     this.parent = parent;
     this.mimeType = mimeType;
   }
 
+  /**
+   * Creates an item for a file that does not exist in the repository yet. The file is created together with its
+   * content when the output stream returned by {@link #getOutputStream()} is closed, so that no empty placeholder has
+   * to be written and looked up again first.
+   */
+  public ReportContentItem( final String path, final String name, final boolean hidden,
+                            final ReportContentLocation parent, final String mimeType ) {
+    this.path = path;
+    this.name = name;
+    this.hidden = hidden;
+    this.parent = parent;
+    this.mimeType = mimeType;
+  }
+
+  private RepositoryFile getFile() {
+    if ( file == null ) {
+      final IUnifiedRepository repo = PentahoSystem.get( IUnifiedRepository.class );
+      file = repo.getFile( path );
+    }
+    return file;
+  }
+
   public void setMimeType( final String mimeType ) {
     this.mimeType = mimeType;
   }
@@ -58,10 +87,38 @@ public class ReportContentItem implements ContentItem {
   }
 
   public OutputStream getOutputStream() throws ContentIOException, IOException {
-    return new RepositoryFileOutputStream( file );
+    if ( file != null ) {
+      return new RepositoryFileOutputStream( file );
+    }
+    return new FilterOutputStream( new RepositoryFileOutputStream( path, hidden ) ) {
+      private boolean closed;
+
+      public void write( final byte[] b, final int off, final int len ) throws IOException {
+        out.write( b, off, len );
+      }
+
+      public void close() throws IOException {
+        if ( closed ) {
+          return;
+        }
+        closed = true;
+        boolean written = false;
+        try {
+          super.close();
+          // the repository file exists only now
+          written = true;
+        } finally {
+          parent.finishPending( name, written );
+        }
+      }
+    };
   }
 
   public InputStream getInputStream() throws ContentIOException, IOException {
+    final RepositoryFile file = getFile();
+    if ( file == null ) {
+      throw new ContentIOException( "Content has not been written yet: " + path ); //$NON-NLS-1$
+    }
     IUnifiedRepository repo = PentahoSystem.get( IUnifiedRepository.class );
     SimpleRepositoryFileData data = repo.getDataForRead( file.getId(), SimpleRepositoryFileData.class );
     return data.getInputStream();
@@ -76,11 +133,15 @@ public class ReportContentItem implements ContentItem {
   }
 
   public String getName() {
-    return file.getName();
+    return name;
   }
 
   public Object getAttribute( final String domain, final String key ) {
     if ( LibRepositoryBoot.REPOSITORY_DOMAIN.equals( domain ) ) {
+      final RepositoryFile file = getFile();
+      if ( file == null ) {
+        return null;
+      }
       if ( LibRepositoryBoot.SIZE_ATTRIBUTE.equals( key ) ) {
         return new Long( file.getFileSize() );
       } else if ( LibRepositoryBoot.VERSION_ATTRIBUTE.equals( key ) ) {
@@ -103,12 +164,17 @@ public class ReportContentItem implements ContentItem {
   }
 
   public boolean delete() {
+    final RepositoryFile file = getFile();
+    if ( file == null ) {
+      return false;
+    }
     IUnifiedRepository repo = PentahoSystem.get( IUnifiedRepository.class );
     repo.deleteFile( file.getId(), "PRE:DELETE" );
+    parent.forget( name );
     return true;
   }
 
   public Object getContentId() {
-    return file.getPath().replace( '/', ':' );
+    return path.replace( '/', ':' );
   }
 }
@@ -17,14 +17,14 @@
 
 package org.pentaho.reporting.platform.plugin.repository;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
-import org.pentaho.platform.repository2.unified.fileio.RepositoryFileOutputStream;
 import org.pentaho.platform.util.web.MimeHelper;
 import org.pentaho.reporting.libraries.base.util.IOUtils;
 import org.pentaho.reporting.libraries.repository.ContentCreationException;
@@ -41,10 +41,23 @@ import org.pentaho.reporting.libraries.repository.Repository;
  * @author Thomas Morgner
  */
 public class ReportContentLocation implements ContentLocation {
+  /**
+   * Paths of new files that have been handed out by any location but whose content has not been written yet. Files
+   * are only created in the repository when their content is complete, so without this two report runs writing into
+   * the same folder at the same time could both pick the same name for their data files.
+   */
+  private static final Set<String> PENDING_PATHS = new HashSet<String>();
+
   private RepositoryFile location;
 
   private ReportContentRepository repository;
   private String[] hiddenExtensions = { ".jpe", ".jpeg", ".jpg", ".png", ".css" };
+  /**
+   * Names of children known to exist, because they were found in the repository or written through this location.
+   * Other runs may add files at any time, so a name that is missing here is always checked against the repository.
+   * Guarded by this location.
+   */
+  private final Set<String> knownNames;
 
   public ReportContentLocation( final RepositoryFile location, final ReportContentRepository repository ) {
     if ( location == null ) {
@@ -55,6 +68,7 @@ public class ReportContentLocation implements ContentLocation {
     }
     this.location = location;
     this.repository = repository;
+    this.knownNames = new HashSet<String>();
   }
 
   public ContentEntity[] listContents() throws ContentIOException {
@@ -81,25 +95,19 @@ public class ReportContentLocation implements ContentLocation {
   }
 
   public ContentItem createItem( final String name ) throws ContentCreationException {
-    IUnifiedRepository repo = PentahoSystem.get( IUnifiedRepository.class );
     final String extension = IOUtils.getInstance().getFileExtension( name );
     final String mimeType = MimeHelper.getMimeTypeFromExtension( extension );
-    RepositoryFileOutputStream rfos = null;
     String path = this.location.getPath() + "/" + name;
-    if ( repo.getFile( path ) == null ) {
-      if ( isHiddenExtension( extension ) ) {
-        rfos = new RepositoryFileOutputStream( path, true );
-      } else {
-        rfos = new RepositoryFileOutputStream( path, false );
-      }
-
-      try {
-        rfos.close();
-      } catch ( IOException e ) {
-        throw new ContentCreationException( e.getMessage(), e );
-      }
+    final RepositoryFile file = lookup( name );
+    if ( file != null ) {
+      return new ReportContentItem( file, this, mimeType );
+    }
+    // the file is created together with its content once the item's output stream is closed; until then the name is
+    // reserved so that no other location hands it out again
+    synchronized ( PENDING_PATHS ) {
+      PENDING_PATHS.add( path );
     }
-    return new ReportContentItem( repo.getFile( path ), this, mimeType );
+    return new ReportContentItem( path, name, isHiddenExtension( extension ), this, mimeType );
   }
 
   public ContentLocation createLocation( final String string ) throws ContentCreationException {
@@ -107,9 +115,46 @@ public class ReportContentLocation implements ContentLocation {
   }
 
   public boolean exists( final String name ) {
+    synchronized ( this ) {
+      if ( knownNames.contains( name ) ) {
+        return true;
+      }
+    }
+    synchronized ( PENDING_PATHS ) {
+      if ( PENDING_PATHS.contains( this.location.getPath() + "/" + name ) ) {
+        return true;
+      }
+    }
+    return lookup( name ) != null;
+  }
+
+  private RepositoryFile lookup( final String name ) {
     IUnifiedRepository repo = PentahoSystem.get( IUnifiedRepository.class );
-    String path = this.location.getPath() + "/" + name;
-    return repo.getFile( path ) != null;
+    final RepositoryFile file = repo.getFile( this.location.getPath() + "/" + name );
+    if ( file != null ) {
+      synchronized ( this ) {
+        knownNames.add( name );
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Called once the content of a new child has been written to the repository, or writing it has failed.
+   */
+  void finishPending( final String name, final boolean written ) {
+    if ( written ) {
+      synchronized ( this ) {
+        knownNames.add( name );
+      }
+    }
+    synchronized ( PENDING_PATHS ) {
+      PENDING_PATHS.remove( this.location.getPath() + "/" + name );
+    }
+  }
+
+  synchronized void forget( final String name ) {
+    knownNames.remove( name );
   }
 
   public String getName() {
@@ -0,0 +1,142 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Provider;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.URLName;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+
+public class EmailBurstSenderTest extends TestCase {
+  /**
+   * Stand-in for an SMTP server: accepts every connection and records the messages sent over it.
+   */
+  public static class RecordingTransport extends Transport {
+    private static int connectionCount;
+    private static final List<Message> messages = new ArrayList<Message>();
+    private static volatile String rejectSubject;
+
+    public RecordingTransport( final Session session, final URLName urlname ) {
+      super( session, urlname );
+    }
+
+    protected boolean protocolConnect( final String host, final int port, final String user, final String password ) {
+      synchronized ( messages ) {
+        connectionCount += 1;
+      }
+      return true;
+    }
+
+    public void sendMessage( final Message msg, final Address[] addresses ) throws MessagingException {
+      if ( isConnected() == false ) {
+        throw new IllegalStateException( "not connected" );
+      }
+      if ( rejectSubject != null && rejectSubject.equals( msg.getSubject() ) ) {
+        throw new MessagingException( "connection reset" );
+      }
+      synchronized ( messages ) {
+        messages.add( msg );
+      }
+    }
+
+    static void reset() {
+      synchronized ( messages ) {
+        connectionCount = 0;
+        messages.clear();
+        rejectSubject = null;
+      }
+    }
+  }
+
+  private Session session;
+
+  public EmailBurstSenderTest() {
+  }
+
+  protected void setUp() throws Exception {
+    ClassicEngineBoot.getInstance().start();
+    RecordingTransport.reset();
+    session = Session.getInstance( new Properties() );
+    session.setProvider( new Provider( Provider.Type.TRANSPORT, "smtp", RecordingTransport.class.getName(), "test",
+        "1.0" ) );
+  }
+
+  private static SimpleEmailComponent createEmail( final int index ) {
+    final SimpleEmailComponent email = new SimpleEmailComponent();
+    email.setFrom( "reports@example.com" );
+    email.setTo( "user" + index + "@example.com" );
+    email.setSubject( "Report " + index );
+    email.setMessagePlain( "Your report number " + index );
+    return email;
+  }
+
+  public void testSendAllReusesConnection() throws Exception {
+    final List<SimpleEmailComponent> emails = new ArrayList<SimpleEmailComponent>();
+    for ( int i = 0; i < 50; i++ ) {
+      emails.add( createEmail( i ) );
+    }
+
+    final EmailBurstSender sender = new EmailBurstSender( session, 4, 20 );
+    assertEquals( 50, sender.sendAll( emails ) );
+    assertEquals( 50, sender.getSentCount() );
+    assertEquals( 0, sender.getFailedCount() );
+    assertEquals( 50, RecordingTransport.messages.size() );
+    // 50 messages with 20 messages per connection
+    assertEquals( 3, RecordingTransport.connectionCount );
+    // messages are sent in the order they were given
+    assertEquals( "Report 0", RecordingTransport.messages.get( 0 ).getSubject() );
+    assertEquals( "Report 49", RecordingTransport.messages.get( 49 ).getSubject() );
+  }
+
+  public void testInvalidEmailDoesNotStopBurst() throws Exception {
+    final List<SimpleEmailComponent> emails = new ArrayList<SimpleEmailComponent>();
+    emails.add( createEmail( 0 ) );
+    final SimpleEmailComponent invalid = createEmail( 1 );
+    invalid.setFrom( null );
+    emails.add( invalid );
+    emails.add( createEmail( 2 ) );
+
+    final EmailBurstSender sender = new EmailBurstSender( session, 2, 0 );
+    assertEquals( 2, sender.sendAll( emails ) );
+    assertEquals( 1, sender.getFailedCount() );
+    assertEquals( 1, RecordingTransport.connectionCount );
+  }
+
+  public void testBrokenMessageDoesNotStopBurst() throws Exception {
+    final List<SimpleEmailComponent> emails = new ArrayList<SimpleEmailComponent>();
+    emails.add( createEmail( 0 ) );
+    emails.add( createEmail( 1 ) );
+    emails.add( createEmail( 2 ) );
+    RecordingTransport.rejectSubject = "Report 1";
+
+    final EmailBurstSender sender = new EmailBurstSender( session, 2, 0 );
+    assertEquals( 2, sender.sendAll( emails ) );
+    assertEquals( 1, sender.getFailedCount() );
+    assertEquals( 2, RecordingTransport.messages.size() );
+    assertEquals( "Report 2", RecordingTransport.messages.get( 1 ).getSubject() );
+  }
+}
@@ -0,0 +1,63 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin;
+
+import junit.framework.TestCase;
+import org.owasp.esapi.ESAPI;
+import org.owasp.esapi.Encoder;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+
+public class ParameterLabelEncoderTest extends TestCase {
+  private static final String[] LABELS = new String[] { "Germany", "United States", "Cote d'Ivoire", "Bosnia & Herzegovina",
+    "\"quoted\"", "<script>", "1,234.56", "snake_case-label", "Zürich", "日本", "" };
+
+  @Override
+  protected void setUp() throws Exception {
+    ClassicEngineBoot.getInstance().start();
+  }
+
+  public void testEncodingMatchesEsapi() {
+    final Encoder esapi = ESAPI.encoder();
+    final ParameterLabelEncoder encoder = ParameterLabelEncoder.getInstance();
+    for ( int run = 0; run < 2; run++ ) {
+      // the second run is served from the cache
+      for ( final String label : LABELS ) {
+        assertEquals( label, esapi.encodeForHTMLAttribute( label ), encoder.encodeForHTMLAttribute( label ) );
+      }
+    }
+    assertNull( encoder.encodeForHTMLAttribute( null ) );
+  }
+
+  public void testSafeStrings() {
+    assertTrue( ParameterLabelEncoder.isSafe( "Product_Line-1.0,2" ) );
+    assertFalse( ParameterLabelEncoder.isSafe( "Product Line" ) );
+    assertFalse( ParameterLabelEncoder.isSafe( "Zürich" ) );
+  }
+
+  public void testCachedEncodingIsStable() {
+    final ParameterLabelEncoder encoder = ParameterLabelEncoder.getInstance();
+    for ( final String label : LABELS ) {
+      final String first = encoder.encodeForHTMLAttribute( label );
+      // repeated lookups must return the same encoding, whether served from the cache or not
+      assertEquals( first, encoder.encodeForHTMLAttribute( label ) );
+      assertEquals( first, encoder.encodeForHTMLAttribute( new String( label ) ) );
+    }
+    // safe strings are not encoded at all
+    assertEquals( "Product_Line-1.0,2", encoder.encodeForHTMLAttribute( "Product_Line-1.0,2" ) );
+  }
+}
@@ -0,0 +1,89 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ParameterSelectionIndexTest extends TestCase {
+
+  public void testNumericSelectionsMatchAcrossTypes() {
+    final ParameterSelectionIndex index = new ParameterSelectionIndex();
+    index.add( new Object[] { Integer.valueOf( 1 ), new BigDecimal( "2.00" ), Double.valueOf( 2.5 ) } );
+
+    assertTrue( index.contains( Long.valueOf( 1 ) ) );
+    assertTrue( index.contains( new BigDecimal( "1.0" ) ) );
+    assertTrue( index.contains( Double.valueOf( 1.0 ) ) );
+    assertTrue( index.contains( BigInteger.valueOf( 2 ) ) );
+    assertTrue( index.contains( Short.valueOf( (short) 2 ) ) );
+    assertTrue( index.contains( new BigDecimal( "2.50" ) ) );
+    assertTrue( index.contains( Float.valueOf( 2.5f ) ) );
+    assertFalse( index.contains( Integer.valueOf( 3 ) ) );
+    assertFalse( index.contains( Double.valueOf( 1.5 ) ) );
+    assertFalse( index.contains( "1" ) );
+  }
+
+  public void testFractionalSelectionsMatchByDecimalValue() {
+    final ParameterSelectionIndex index = new ParameterSelectionIndex();
+    index.add( new Object[] { Float.valueOf( 0.1f ), new BigDecimal( "1.00000000000000000001" ) } );
+
+    assertTrue( index.contains( Double.valueOf( 0.1 ) ) );
+    assertTrue( index.contains( new BigDecimal( "0.10" ) ) );
+    assertTrue( index.contains( new BigDecimal( "1.000000000000000000010" ) ) );
+    // distinct high-precision values do not collapse onto the same double
+    assertFalse( index.contains( new BigDecimal( "1.00000000000000000002" ) ) );
+    assertFalse( index.contains( Integer.valueOf( 1 ) ) );
+  }
+
+  public void testDuplicatesAreIgnored() {
+    final ParameterSelectionIndex index = new ParameterSelectionIndex();
+    index.add( new Object[] { "a", "b", "a", Integer.valueOf( 7 ), Long.valueOf( 7 ) } );
+    assertEquals( 3, index.size() );
+    assertEquals( "a", index.getFirstSelection() );
+  }
+
+  public void testNullSelection() {
+    final ParameterSelectionIndex index = new ParameterSelectionIndex();
+    assertFalse( index.contains( null ) );
+    index.add( new Object[] { null, "a" } );
+    assertTrue( index.contains( null ) );
+    assertTrue( index.markSelected( null ) );
+    assertEquals( 1, index.getUnmatchedSelections().size() );
+  }
+
+  public void testUnmatchedSelections() {
+    final ParameterSelectionIndex index = new ParameterSelectionIndex();
+    for ( int i = 0; i < 1000; i++ ) {
+      index.add( Integer.valueOf( i ) );
+    }
+    index.add( "x" );
+
+    for ( int i = 0; i < 1000; i += 2 ) {
+      assertTrue( index.markSelected( Long.valueOf( i ) ) );
+    }
+    assertFalse( index.markSelected( Long.valueOf( 1000 ) ) );
+
+    final List<Object> unmatched = index.getUnmatchedSelections();
+    assertEquals( 501, unmatched.size() );
+    assertEquals( new BigDecimal( "1" ), unmatched.get( 0 ) );
+    assertEquals( "x", unmatched.get( 500 ) );
+  }
+}
@@ -20,10 +20,13 @@ package org.pentaho.reporting.platform.plugin;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.Collections;
 import javax.xml.parsers.DocumentBuilderFactory;
 
 import junit.framework.TestCase;
+import org.pentaho.platform.api.engine.IParameterProvider;
 import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.solution.SimpleParameterProvider;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.test.platform.engine.core.MicroPlatform;
@@ -101,4 +104,26 @@ public class ParameterTest extends TestCase {
     }
   }
 
+  public void testJsonParameterFormat() throws Exception {
+    final SimpleParameterProvider requestParameters = new SimpleParameterProvider();
+    requestParameters.setParameter( ParameterXmlContentHandler.PARAMETER_FORMAT,
+        ParameterXmlContentHandler.PARAMETER_FORMAT_JSON );
+    final ParameterContentGenerator contentGenerator = new ParameterContentGenerator();
+    contentGenerator.setParameterProviders( Collections.<String, IParameterProvider>singletonMap(
+        IParameterProvider.SCOPE_REQUEST, requestParameters ) );
+    assertEquals( "application/json", contentGenerator.getMimeType() );
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final ParameterXmlContentHandler handler = new ParameterXmlContentHandler( contentGenerator, false );
+    handler.createParameterContent( baos, "resource/solution/test/reporting/prd3882.prpt",
+        "resource/solution/test/reporting/prd3882.prpt", false, null );
+
+    final String json = baos.toString( "UTF-8" );
+    assertTrue( json.startsWith( "{" ) );
+    assertTrue( json.endsWith( "}" ) );
+    assertTrue( json.contains( "\"parameters\":[" ) );
+    assertTrue( json.contains( "\"keys\":[\"1234\",\"Gg==\",\"Gg==\"]" ) );
+    assertTrue( json.contains( "\"encoded\":[1,2]" ) );
+  }
+
 }
@@ -0,0 +1,111 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.parameters.DefaultParameterContext;
+import org.pentaho.reporting.engine.classic.core.parameters.ParameterAttributeNames;
+import org.pentaho.reporting.engine.classic.core.parameters.StaticListParameter;
+
+public class ReportContentUtilTest extends TestCase {
+  private static final int SELECTION_COUNT = 1000;
+
+  private DefaultParameterContext parameterContext;
+
+  @Override
+  protected void setUp() throws Exception {
+    ClassicEngineBoot.getInstance().start();
+    parameterContext = new DefaultParameterContext( new MasterReport() );
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    parameterContext.close();
+  }
+
+  public void testConvertMultiSelectNumbers() throws Exception {
+    final StaticListParameter parameter = new StaticListParameter( "p", true, false, Integer[].class );
+    final List<String> selections = new ArrayList<String>();
+    for ( int i = 0; i < SELECTION_COUNT; i++ ) {
+      selections.add( String.valueOf( i ) );
+    }
+
+    final Object value = ReportContentUtil.computeParameterValue( parameterContext, parameter, selections );
+
+    assertTrue( value instanceof Integer[] );
+    final Integer[] numbers = (Integer[]) value;
+    assertEquals( SELECTION_COUNT, numbers.length );
+    for ( int i = 0; i < SELECTION_COUNT; i++ ) {
+      assertEquals( Integer.valueOf( i ), numbers[i] );
+    }
+  }
+
+  public void testConvertMultiSelectFormattedNumbers() throws Exception {
+    final StaticListParameter parameter = new StaticListParameter( "p", true, false, Long[].class );
+    parameter.setParameterAttribute( ParameterAttributeNames.Core.NAMESPACE,
+        ParameterAttributeNames.Core.DATA_FORMAT, "'#'0" );
+    final String[] selections = new String[SELECTION_COUNT];
+    for ( int i = 0; i < SELECTION_COUNT; i++ ) {
+      selections[i] = "#" + i;
+    }
+
+    final Object value = ReportContentUtil.computeParameterValue( parameterContext, parameter, selections );
+
+    final Long[] numbers = (Long[]) value;
+    assertEquals( SELECTION_COUNT, numbers.length );
+    for ( int i = 0; i < SELECTION_COUNT; i++ ) {
+      // the reused format must not carry state from one value to the next
+      assertEquals( Long.valueOf( i ), numbers[i] );
+    }
+  }
+
+  public void testConvertMultiSelectDates() throws Exception {
+    final StaticListParameter parameter = new StaticListParameter( "p", true, false, Date[].class );
+    parameter.setParameterAttribute( ParameterAttributeNames.Core.NAMESPACE,
+        ParameterAttributeNames.Core.TIMEZONE, "utc" );
+    final String[] selections = new String[SELECTION_COUNT];
+    for ( int i = 0; i < SELECTION_COUNT; i++ ) {
+      selections[i] = "2013-01-01T00:00:00.000";
+    }
+    selections[1] = "2013-01-02";
+
+    final Object value = ReportContentUtil.computeParameterValue( parameterContext, parameter, selections );
+
+    final Date[] dates = (Date[]) value;
+    assertEquals( SELECTION_COUNT, dates.length );
+    assertEquals( 1356998400000L, dates[0].getTime() );
+    // a value in a different format in the middle of the selection falls back to the local ISO date ..
+    assertEquals( new SimpleDateFormat( "yyyy-MM-dd" ).parse( "2013-01-02" ), dates[1] );
+    // .. and does not affect the values after it
+    assertEquals( 1356998400000L, dates[2].getTime() );
+    assertEquals( 1356998400000L, dates[SELECTION_COUNT - 1].getTime() );
+  }
+
+  public void testConvertSingleString() throws Exception {
+    final StaticListParameter parameter = new StaticListParameter( "p", false, false, String.class );
+    assertEquals( "42", ReportContentUtil.computeParameterValue( parameterContext, parameter, Integer.valueOf( 42 ) ) );
+    assertNull( ReportContentUtil.computeParameterValue( parameterContext, parameter, "" ) );
+  }
+}
@@ -17,6 +17,7 @@
 
 package org.pentaho.reporting.platform.plugin;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -25,9 +26,14 @@ import java.util.concurrent.Callable;
 import junit.framework.TestCase;
 import org.junit.Assert;
 import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.engine.security.SecurityHelper;
+import org.pentaho.platform.repository2.unified.fs.FileSystemBackedUnifiedRepository;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.csv.CSVTableModule;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.xml.XmlTableModule;
 import org.pentaho.test.platform.engine.core.MicroPlatform;
 
 /**
@@ -84,6 +90,44 @@ public class ReportingActionTest extends TestCase {
     assertTrue( outputFile.exists() );
   }
 
+  public void testAdditionalOutputTargetsRequireFolder() throws Exception {
+    final SimpleReportingAction reportingAction = new SimpleReportingAction();
+    reportingAction.setInputStream( new FileInputStream( "resource/solution/test/reporting/report.prpt" ) ); //$NON-NLS-1$
+    reportingAction.setOutputStream( new ByteArrayOutputStream() );
+    reportingAction.setAdditionalOutputTargets( XmlTableModule.TABLE_XML_EXPORT_TYPE );
+    assertFalse( reportingAction.validate() );
+
+    reportingAction.setAdditionalOutputFolder( "/output" ); //$NON-NLS-1$
+    assertTrue( reportingAction.validate() );
+  }
+
+  public void testAdditionalOutputTargets() throws Exception {
+    final File baseDir = new File( "./resource/solution/system/tmp/additional-outputs" ); //$NON-NLS-1$
+    new File( baseDir, "output" ).mkdirs(); //$NON-NLS-1$
+    microPlatform.defineInstance( IUnifiedRepository.class,
+        new FileSystemBackedUnifiedRepository( baseDir.getAbsolutePath() ) );
+
+    final SimpleReportingAction reportingAction = new SimpleReportingAction();
+    reportingAction.setInputStream( new FileInputStream( "resource/solution/test/reporting/report.prpt" ) ); //$NON-NLS-1$
+    reportingAction.setReportDefinitionPath( "/test/reporting/report.prpt" ); //$NON-NLS-1$
+    reportingAction.setOutputTarget( CSVTableModule.TABLE_CSV_STREAM_EXPORT_TYPE );
+    reportingAction.setAdditionalOutputTargets( XmlTableModule.TABLE_XML_EXPORT_TYPE );
+    reportingAction.setAdditionalOutputFolder( "/output" ); //$NON-NLS-1$
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    reportingAction.setOutputStream( outputStream );
+
+    assertTrue( reportingAction.validate() );
+    SecurityHelper.getInstance().runAsUser( "joe", new Callable<Object>() { //$NON-NLS-1$
+      public Object call() throws Exception {
+        reportingAction.execute();
+        return null;
+      }
+    } );
+
+    assertTrue( outputStream.size() > 0 );
+    assertNotNull( PentahoSystem.get( IUnifiedRepository.class ).getFile( "/output/report.xml" ) ); //$NON-NLS-1$
+  }
+
   // public void testHTML() throws Exception
   // {
   // // create an instance of the component
@@ -0,0 +1,61 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.util.StagingMode;
+
+public class StagingHandlerTest extends TestCase {
+  public void testDeferredThruHoldsBackSmallOutput() throws Exception {
+    final ByteArrayOutputStream destination = new ByteArrayOutputStream();
+    final StagingHandler handler = new StagingHandler( destination, StagingMode.THRU, null, 16 );
+    final OutputStream out = handler.getStagingOutputStream();
+    out.write( new byte[10] );
+    out.flush();
+    assertEquals( 0, destination.size() );
+    assertTrue( handler.canSendHeaders() );
+
+    handler.complete();
+    assertEquals( 10, destination.size() );
+  }
+
+  public void testDeferredThruPassesThroughAfterThreshold() throws Exception {
+    final ByteArrayOutputStream destination = new ByteArrayOutputStream();
+    final StagingHandler handler = new StagingHandler( destination, StagingMode.THRU, null, 16 );
+    final OutputStream out = handler.getStagingOutputStream();
+    out.write( new byte[20] );
+    assertEquals( 20, destination.size() );
+    assertFalse( handler.canSendHeaders() );
+
+    out.write( 1 );
+    assertEquals( 21, destination.size() );
+    assertEquals( 21, handler.getWrittenByteCount() );
+  }
+
+  public void testPlainThru() throws Exception {
+    final ByteArrayOutputStream destination = new ByteArrayOutputStream();
+    final StagingHandler handler = new StagingHandler( destination, StagingMode.THRU, null );
+    assertTrue( handler.canSendHeaders() );
+    handler.getStagingOutputStream().write( 1 );
+    assertEquals( 1, destination.size() );
+    assertFalse( handler.canSendHeaders() );
+  }
+}
@@ -0,0 +1,56 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.connection;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class DefaultConnectionMetricsTest extends TestCase {
+  public void testAcquisitionHistogram() {
+    final DefaultConnectionMetrics metrics = new DefaultConnectionMetrics();
+    metrics.connectionAcquired( "SampleData", TimeUnit.MICROSECONDS.toNanos( 500 ) );
+    metrics.connectionAcquired( "SampleData", TimeUnit.MILLISECONDS.toNanos( 7 ) );
+    metrics.connectionAcquired( "SampleData", TimeUnit.MILLISECONDS.toNanos( 20000 ) );
+    metrics.connectionFailed( "SampleData", TimeUnit.MILLISECONDS.toNanos( 3 ) );
+    metrics.fallbackUsed( "SampleData" );
+
+    final DefaultConnectionMetrics.DataSourceStatistics stats = metrics.getStatistics( "SampleData" );
+    assertEquals( 3, stats.getAcquiredCount() );
+    assertEquals( 1, stats.getFailureCount() );
+    assertEquals( 1, stats.getFallbackCount() );
+
+    final long[] histogram = stats.getHistogram();
+    assertEquals( DefaultConnectionMetrics.DataSourceStatistics.getBucketLimits().length + 1, histogram.length );
+    assertEquals( 1, histogram[0] );
+    assertEquals( 1, histogram[2] );
+    assertEquals( 1, histogram[histogram.length - 1] );
+    assertNull( metrics.getStatistics( "Other" ) );
+  }
+
+  public void testMaxBorrowed() {
+    final DefaultConnectionMetrics metrics = new DefaultConnectionMetrics();
+    metrics.borrowedConnectionsChanged( "SampleData", 1 );
+    metrics.borrowedConnectionsChanged( "SampleData", 3 );
+    metrics.borrowedConnectionsChanged( "SampleData", 2 );
+    assertEquals( 3, metrics.getStatistics( "SampleData" ).getMaxBorrowedConnections() );
+
+    metrics.reset();
+    assertTrue( metrics.getAllStatistics().isEmpty() );
+  }
+}
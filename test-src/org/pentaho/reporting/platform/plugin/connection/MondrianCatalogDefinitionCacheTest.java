@@ -0,0 +1,76 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.connection;
+
+import junit.framework.TestCase;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+
+public class MondrianCatalogDefinitionCacheTest extends TestCase {
+  @Override
+  protected void setUp() throws Exception {
+    ClassicEngineBoot.getInstance().start();
+    MondrianCatalogDefinitionCache.getInstance().clear();
+  }
+
+  public void testDefinitionsAreSharedPerUser() {
+    final MondrianCatalogDefinitionCache cache = MondrianCatalogDefinitionCache.getInstance();
+    final StandaloneSession joe = new StandaloneSession( "joe", "joe-session-1" );
+    final StandaloneSession joeAgain = new StandaloneSession( "joe", "joe-session-2" );
+    final StandaloneSession suzy = new StandaloneSession( "suzy", "suzy-session" );
+
+    assertNull( cache.get( "SteelWheels", joe ) );
+    cache.put( "SteelWheels", joe, "<Schema name=\"SteelWheels\"/>" );
+    assertEquals( "<Schema name=\"SteelWheels\"/>", cache.get( "SteelWheels", joeAgain ) );
+    assertNull( cache.get( "SteelWheels", suzy ) );
+    assertNull( cache.get( "SteelWheels", null ) );
+  }
+
+  public void testInvalidate() {
+    final MondrianCatalogDefinitionCache cache = MondrianCatalogDefinitionCache.getInstance();
+    final StandaloneSession joe = new StandaloneSession( "joe", "joe-session-1" );
+    cache.put( "SteelWheels", joe, "<Schema name=\"SteelWheels\"/>" );
+    cache.put( "SampleData", joe, "<Schema name=\"SampleData\"/>" );
+
+    cache.invalidate( "SteelWheels" );
+    assertNull( cache.get( "SteelWheels", joe ) );
+    assertNotNull( cache.get( "SampleData", joe ) );
+  }
+
+  public void testInvalidateDefinition() {
+    final MondrianCatalogDefinitionCache cache = MondrianCatalogDefinitionCache.getInstance();
+    final StandaloneSession joe = new StandaloneSession( "joe", "joe-session-1" );
+    final StandaloneSession suzy = new StandaloneSession( "suzy", "suzy-session" );
+    cache.put( "SteelWheels", joe, "mondrian:/SteelWheels" );
+    cache.put( "SteelWheels", suzy, "mondrian:/SteelWheels" );
+    cache.put( "SampleData", joe, "mondrian:/SampleData" );
+
+    cache.invalidateDefinition( "mondrian:/SteelWheels" );
+    assertNull( cache.get( "SteelWheels", joe ) );
+    assertNull( cache.get( "SteelWheels", suzy ) );
+    assertEquals( "mondrian:/SampleData", cache.get( "SampleData", joe ) );
+  }
+
+  public void testSizeIsBounded() {
+    final MondrianCatalogDefinitionCache cache = MondrianCatalogDefinitionCache.getInstance();
+    for ( int i = 0; i < 2500; i++ ) {
+      cache.put( "Catalog" + i, new StandaloneSession( "user" + i, "session" + i ), "mondrian:/Catalog" + i );
+    }
+    assertTrue( cache.size() <= 1000 );
+  }
+}
@@ -0,0 +1,81 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.connection;
+
+import junit.framework.TestCase;
+import org.pentaho.platform.api.engine.PentahoAccessControlException;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+
+public class MondrianRoleMappingCacheTest extends TestCase {
+  private static class CountingRoleMapping implements MondrianRoleMappingCache.RoleMapping {
+    private int calls;
+
+    public String computeRoleString( final String catalog ) throws PentahoAccessControlException {
+      calls += 1;
+      if ( "denied".equals( catalog ) ) {
+        throw new PentahoAccessControlException( "denied" );
+      }
+      return "Authenticated," + catalog;
+    }
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    ClassicEngineBoot.getInstance().start();
+    MondrianRoleMappingCache.getInstance().clear();
+  }
+
+  public void testRolesAreCachedPerSessionAndCatalog() throws Exception {
+    final MondrianRoleMappingCache cache = MondrianRoleMappingCache.getInstance();
+    final CountingRoleMapping mapping = new CountingRoleMapping();
+    final StandaloneSession joe = new StandaloneSession( "joe", "joe-session" );
+    final StandaloneSession suzy = new StandaloneSession( "suzy", "suzy-session" );
+
+    final long hits = cache.getHitCount();
+    final long misses = cache.getMissCount();
+    assertEquals( "Authenticated,SteelWheels", cache.getRoleString( joe, "SteelWheels", mapping ) );
+    assertEquals( "Authenticated,SteelWheels", cache.getRoleString( joe, "SteelWheels", mapping ) );
+    assertEquals( 1, mapping.calls );
+    assertEquals( "Authenticated,SampleData", cache.getRoleString( joe, "SampleData", mapping ) );
+    assertEquals( "Authenticated,SteelWheels", cache.getRoleString( suzy, "SteelWheels", mapping ) );
+    assertEquals( 3, mapping.calls );
+    assertEquals( hits + 1, cache.getHitCount() );
+    assertEquals( misses + 3, cache.getMissCount() );
+
+    cache.onLogout( joe );
+    assertEquals( 1, cache.size() );
+    cache.getRoleString( joe, "SteelWheels", mapping );
+    assertEquals( 4, mapping.calls );
+  }
+
+  public void testFailuresAreNotCached() throws Exception {
+    final MondrianRoleMappingCache cache = MondrianRoleMappingCache.getInstance();
+    final CountingRoleMapping mapping = new CountingRoleMapping();
+    final StandaloneSession joe = new StandaloneSession( "joe", "joe-session" );
+    for ( int i = 0; i < 2; i++ ) {
+      try {
+        cache.getRoleString( joe, "denied", mapping );
+        fail();
+      } catch ( PentahoAccessControlException e ) {
+        // expected
+      }
+    }
+    assertEquals( 2, mapping.calls );
+  }
+}
@@ -0,0 +1,122 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.connection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.AttributeNames;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+
+public class ReportConnectionBrokerTest extends TestCase {
+  private static class CountingConnection implements InvocationHandler {
+    private int closeCalls;
+
+    public Object invoke( final Object proxy, final Method method, final Object[] args ) throws Throwable {
+      if ( "close".equals( method.getName() ) ) {
+        closeCalls += 1;
+        return null;
+      }
+      if ( "isClosed".equals( method.getName() ) ) {
+        return closeCalls > 0;
+      }
+      return null;
+    }
+
+    public Connection create() {
+      return (Connection) Proxy.newProxyInstance( Connection.class.getClassLoader(),
+          new Class[] { Connection.class }, this );
+    }
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    ClassicEngineBoot.getInstance().start();
+  }
+
+  public void testNoBrokerOutsideOfRun() {
+    assertNull( ReportConnectionBroker.getCurrent() );
+  }
+
+  public void testSharingIsOptIn() {
+    ReportConnectionBroker.begin( new MasterReport() );
+    try {
+      assertFalse( ReportConnectionBroker.getCurrent().isSharingEnabled() );
+    } finally {
+      ReportConnectionBroker.end();
+    }
+
+    final MasterReport report = new MasterReport();
+    report.setAttribute( AttributeNames.Pentaho.NAMESPACE, ReportConnectionBroker.SHARE_CONNECTIONS_ATTRIBUTE, "true" );
+    ReportConnectionBroker.begin( report );
+    try {
+      assertTrue( ReportConnectionBroker.getCurrent().isSharingEnabled() );
+    } finally {
+      ReportConnectionBroker.end();
+    }
+  }
+
+  public void testConnectionIsSharedWithinRun() throws Exception {
+    final CountingConnection physical = new CountingConnection();
+    ReportConnectionBroker.begin();
+    try {
+      final ReportConnectionBroker broker = ReportConnectionBroker.getCurrent();
+      assertNotNull( broker );
+      assertNull( broker.lookup( "SampleData" ) );
+
+      final Connection first = broker.register( "SampleData", physical.create() );
+      first.close();
+      assertTrue( first.isClosed() );
+      assertEquals( 0, physical.closeCalls );
+
+      final Connection second = broker.lookup( "SampleData" );
+      assertNotNull( second );
+      assertFalse( second.isClosed() );
+      second.close();
+      assertEquals( 0, physical.closeCalls );
+    } finally {
+      ReportConnectionBroker.end();
+    }
+    assertEquals( 1, physical.closeCalls );
+    assertNull( ReportConnectionBroker.getCurrent() );
+  }
+
+  public void testOpenHandleOutlivesRun() throws Exception {
+    final CountingConnection physical = new CountingConnection();
+    ReportConnectionBroker.begin();
+    final Connection handle;
+    try {
+      ReportConnectionBroker.begin();
+      try {
+        handle = ReportConnectionBroker.getCurrent().register( "SampleData", physical.create() );
+      } finally {
+        ReportConnectionBroker.end();
+      }
+      assertNotNull( "nested runs share the outer broker", ReportConnectionBroker.getCurrent() );
+    } finally {
+      ReportConnectionBroker.end();
+    }
+    assertEquals( 0, physical.closeCalls );
+    handle.close();
+    assertEquals( 1, physical.closeCalls );
+  }
+}
@@ -0,0 +1,162 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.table.TableModel;
+
+import junit.framework.TestCase;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.reporting.engine.classic.core.DataRow;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.ReportDataFactoryException;
+import org.pentaho.reporting.engine.classic.core.TableDataFactory;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.csv.CSVTableModule;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.xml.XmlTableModule;
+import org.pentaho.reporting.engine.classic.core.util.TypedTableModel;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+import org.pentaho.reporting.platform.plugin.MicroPlatformFactory;
+import org.pentaho.test.platform.engine.core.MicroPlatform;
+
+public class MultiFormatExporterTest extends TestCase {
+  private static class CollectingTarget implements BurstTarget {
+    private final Map<Object, byte[]> outputs = new LinkedHashMap<Object, byte[]>();
+    private final Map<Object, String> mimeTypes = new LinkedHashMap<Object, String>();
+    private boolean closed;
+
+    public OutputStream openPartition( final Object outputType, final String mimeType ) {
+      mimeTypes.put( outputType, mimeType );
+      return new ByteArrayOutputStream();
+    }
+
+    public void closePartition( final Object outputType, final String mimeType, final OutputStream outputStream,
+                                final boolean successful ) {
+      if ( successful ) {
+        outputs.put( outputType, ( (ByteArrayOutputStream) outputStream ).toByteArray() );
+      }
+    }
+
+    public void close() {
+      closed = true;
+    }
+  }
+
+  /**
+   * Counts the queries executed by the report's data factory and all of its derived copies.
+   */
+  private static class CountingDataFactory extends TableDataFactory {
+    private final int[] queryCount;
+
+    private CountingDataFactory( final String name, final TableModel tableModel, final int[] queryCount ) {
+      super( name, tableModel );
+      this.queryCount = queryCount;
+    }
+
+    public TableModel queryData( final String query, final DataRow parameters ) throws ReportDataFactoryException {
+      synchronized ( queryCount ) {
+        queryCount[0] += 1;
+      }
+      return super.queryData( query, parameters );
+    }
+  }
+
+  private MicroPlatform microPlatform;
+  private int[] queryCount;
+
+  @Override
+  protected void setUp() throws Exception {
+    new File( "./resource/solution/system/tmp" ).mkdirs();
+
+    microPlatform = MicroPlatformFactory.create();
+    microPlatform.start();
+
+    PentahoSessionHolder.setSession( new StandaloneSession() );
+    queryCount = new int[1];
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    microPlatform.stop();
+  }
+
+  private MasterReport createReport() throws Exception {
+    final ResourceManager resourceManager = new ResourceManager();
+    resourceManager.registerDefaults();
+    final MasterReport report = (MasterReport) resourceManager.createDirectly(
+        new File( "resource/solution/test/reporting/report.prpt" ), MasterReport.class ).getResource();
+
+    final TypedTableModel data = new TypedTableModel( new String[] { "REGION", "VALUE" },
+        new Class[] { String.class, Integer.class } );
+    for ( int row = 0; row < 3; row++ ) {
+      data.addRow( new Object[] { "Region " + row, row } );
+    }
+    report.setDataFactory( new CountingDataFactory( "export-query", data, queryCount ) );
+    report.setQuery( "export-query" );
+    return report;
+  }
+
+  public void testAllFormatsShareOneQuery() throws Exception {
+    final MultiFormatExporter exporter = new MultiFormatExporter( createReport() );
+    exporter.addOutputType( CSVTableModule.TABLE_CSV_STREAM_EXPORT_TYPE );
+    exporter.addOutputType( XmlTableModule.TABLE_XML_EXPORT_TYPE );
+
+    final CollectingTarget target = new CollectingTarget();
+    final Map<String, Throwable> failures = exporter.export( target );
+    assertTrue( failures.isEmpty() );
+    assertTrue( target.closed );
+    assertEquals( 1, queryCount[0] );
+    assertEquals( 2, target.outputs.size() );
+    assertEquals( "text/csv", target.mimeTypes.get( CSVTableModule.TABLE_CSV_STREAM_EXPORT_TYPE ) );
+    for ( final byte[] output : target.outputs.values() ) {
+      final String text = new String( output, "UTF-8" );
+      for ( int row = 0; row < 3; row++ ) {
+        assertTrue( text.contains( "Region " + row ) );
+      }
+    }
+  }
+
+  public void testFailingFormatIsIsolated() throws Exception {
+    final MultiFormatExporter exporter = new MultiFormatExporter( createReport() );
+    exporter.addOutputType( "table/unknown" );
+    exporter.addOutputType( CSVTableModule.TABLE_CSV_STREAM_EXPORT_TYPE );
+
+    final CollectingTarget target = new CollectingTarget();
+    final Map<String, Throwable> failures = exporter.export( target );
+    assertEquals( 1, failures.size() );
+    assertTrue( failures.containsKey( "table/unknown" ) );
+    assertFalse( target.outputs.containsKey( "table/unknown" ) );
+    assertTrue( target.outputs.containsKey( CSVTableModule.TABLE_CSV_STREAM_EXPORT_TYPE ) );
+    assertEquals( 1, queryCount[0] );
+  }
+
+  public void testDuplicateOutputTypeIsRejected() throws Exception {
+    final MultiFormatExporter exporter = new MultiFormatExporter( createReport() );
+    exporter.addOutputType( CSVTableModule.TABLE_CSV_STREAM_EXPORT_TYPE );
+    try {
+      exporter.addOutputType( CSVTableModule.TABLE_CSV_STREAM_EXPORT_TYPE );
+      fail();
+    } catch ( IllegalArgumentException e ) {
+      // expected
+    }
+  }
+}
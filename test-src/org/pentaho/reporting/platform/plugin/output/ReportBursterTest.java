@@ -0,0 +1,194 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import javax.swing.table.TableModel;
+
+import junit.framework.TestCase;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.reporting.engine.classic.core.DataRow;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.ReportDataFactoryException;
+import org.pentaho.reporting.engine.classic.core.TableDataFactory;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.csv.CSVTableModule;
+import org.pentaho.reporting.engine.classic.core.util.TypedTableModel;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+import org.pentaho.reporting.platform.plugin.MicroPlatformFactory;
+import org.pentaho.test.platform.engine.core.MicroPlatform;
+
+public class ReportBursterTest extends TestCase {
+  private static class CollectingTarget implements BurstTarget {
+    private final Map<Object, byte[]> outputs = new HashMap<Object, byte[]>();
+    private final Object failingKey;
+    private boolean closed;
+
+    private CollectingTarget( final Object failingKey ) {
+      this.failingKey = failingKey;
+    }
+
+    public OutputStream openPartition( final Object burstKey, final String mimeType ) throws IOException {
+      if ( burstKey.equals( failingKey ) ) {
+        throw new IOException( "Target rejects " + burstKey );
+      }
+      return new ByteArrayOutputStream();
+    }
+
+    public synchronized void closePartition( final Object burstKey, final String mimeType,
+                                             final OutputStream outputStream, final boolean successful ) {
+      if ( successful ) {
+        outputs.put( burstKey, ( (ByteArrayOutputStream) outputStream ).toByteArray() );
+      }
+    }
+
+    public void close() {
+      closed = true;
+    }
+  }
+
+  /**
+   * Counts the queries executed by the report's data factory and all of its derived copies.
+   */
+  private static class CountingDataFactory extends TableDataFactory {
+    private final int[] queryCount;
+
+    private CountingDataFactory( final String name, final TableModel tableModel, final int[] queryCount ) {
+      super( name, tableModel );
+      this.queryCount = queryCount;
+    }
+
+    public TableModel queryData( final String query, final DataRow parameters ) throws ReportDataFactoryException {
+      synchronized ( queryCount ) {
+        queryCount[0] += 1;
+      }
+      return super.queryData( query, parameters );
+    }
+  }
+
+  private MicroPlatform microPlatform;
+  private int[] queryCount;
+
+  @Override
+  protected void setUp() throws Exception {
+    new File( "./resource/solution/system/tmp" ).mkdirs();
+
+    microPlatform = MicroPlatformFactory.create();
+    microPlatform.start();
+
+    PentahoSessionHolder.setSession( new StandaloneSession() );
+    queryCount = new int[1];
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    microPlatform.stop();
+  }
+
+  private MasterReport createReport( final int partitions, final int rowsPerPartition ) throws Exception {
+    final ResourceManager resourceManager = new ResourceManager();
+    resourceManager.registerDefaults();
+    final MasterReport report = (MasterReport) resourceManager.createDirectly(
+        new File( "resource/solution/test/reporting/report.prpt" ), MasterReport.class ).getResource();
+
+    final TypedTableModel data = new TypedTableModel( new String[] { "REGION", "VALUE" },
+        new Class[] { String.class, Integer.class } );
+    for ( int row = 0; row < rowsPerPartition; row++ ) {
+      for ( int partition = 0; partition < partitions; partition++ ) {
+        data.addRow( new Object[] { "Region " + partition, row } );
+      }
+    }
+    report.setDataFactory( new CountingDataFactory( "burst-query", data, queryCount ) );
+    report.setQuery( "burst-query" );
+    return report;
+  }
+
+  public void testOnePartitionPerKey() throws Exception {
+    final int[] progress = new int[1];
+    final ReportBurster burster =
+        new ReportBurster( createReport( 5, 10 ), "REGION", CSVTableModule.TABLE_CSV_STREAM_EXPORT_TYPE );
+    burster.addProgressListener( new BurstProgressListener() {
+      public void partitionFinished( final Object burstKey, final int finishedPartitions,
+                                     final int totalPartitions, final Throwable error ) {
+        synchronized ( progress ) {
+          progress[0] += 1;
+        }
+        assertEquals( 5, totalPartitions );
+      }
+    } );
+
+    final CollectingTarget target = new CollectingTarget( null );
+    final ReportBurster.Result result = burster.burst( target );
+    assertEquals( 5, result.getPartitionCount() );
+    assertEquals( 5, result.getSuccessCount() );
+    assertEquals( 5, target.outputs.size() );
+    assertEquals( 5, progress[0] );
+    assertTrue( target.closed );
+    assertEquals( 1, queryCount[0] );
+    for ( int partition = 0; partition < 5; partition++ ) {
+      final String key = "Region " + partition;
+      final String csv = new String( target.outputs.get( key ), "UTF-8" );
+      assertTrue( csv.contains( key ) );
+      for ( int other = 0; other < 5; other++ ) {
+        if ( other != partition ) {
+          assertFalse( csv.contains( "Region " + other ) );
+        }
+      }
+    }
+  }
+
+  public void testFailingPartitionIsIsolated() throws Exception {
+    final ReportBurster burster =
+        new ReportBurster( createReport( 4, 3 ), "REGION", CSVTableModule.TABLE_CSV_STREAM_EXPORT_TYPE );
+    final CollectingTarget target = new CollectingTarget( "Region 2" );
+    final ReportBurster.Result result = burster.burst( target );
+    assertEquals( 4, result.getPartitionCount() );
+    assertEquals( 3, result.getSuccessCount() );
+    assertTrue( result.getFailures().containsKey( "Region 2" ) );
+    assertFalse( target.outputs.containsKey( "Region 2" ) );
+  }
+
+  public void testMissingBurstKey() throws Exception {
+    final ReportBurster burster =
+        new ReportBurster( createReport( 2, 2 ), "CUSTOMER", CSVTableModule.TABLE_CSV_STREAM_EXPORT_TYPE );
+    final CollectingTarget target = new CollectingTarget( null );
+    try {
+      burster.burst( target );
+      fail();
+    } catch ( ReportDataFactoryException e ) {
+      // expected
+    }
+    assertTrue( target.closed );
+  }
+
+  public void testCollidingFileNamesAreMadeUnique() throws Exception {
+    final RepositoryBurstTarget target = new RepositoryBurstTarget( "/public/burst", "report" );
+    final String first = target.allocateFileName( "a/b", "text/csv" );
+    final String second = target.allocateFileName( "a_b", "text/csv" );
+    final String third = target.allocateFileName( "a?b", "text/csv" );
+    assertEquals( RepositoryBurstTarget.computeFileName( "report", "a_b", "text/csv" ), first );
+    assertFalse( first.equals( second ) );
+    assertFalse( first.equals( third ) );
+    assertFalse( second.equals( third ) );
+  }
+}
@@ -0,0 +1,68 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.output;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+
+public class WorkbookTemplateRegistryTest extends TestCase {
+  @Override
+  protected void setUp() throws Exception {
+    ClassicEngineBoot.getInstance().start();
+    WorkbookTemplateRegistry.getInstance().clear();
+  }
+
+  public void testIdenticalTemplatesAreShared() throws Exception {
+    final WorkbookTemplateRegistry registry = WorkbookTemplateRegistry.getInstance();
+    final byte[] template = "workbook template".getBytes( "UTF-8" );
+
+    final byte[] first = registry.getTemplateData( new ByteArrayInputStream( template ) );
+    final byte[] second = registry.getTemplateData( new ByteArrayInputStream( template.clone() ) );
+    assertSame( first, second );
+    assertEquals( 1, registry.size() );
+
+    final byte[] other = registry.getTemplateData( new ByteArrayInputStream( "other".getBytes( "UTF-8" ) ) );
+    assertNotSame( first, other );
+    assertEquals( 2, registry.size() );
+    assertNull( registry.getTemplateData( null ) );
+  }
+
+  public void testChangedTemplateIsNotShared() throws Exception {
+    final WorkbookTemplateRegistry registry = WorkbookTemplateRegistry.getInstance();
+    final byte[] template = "workbook template".getBytes( "UTF-8" );
+    final byte[] changed = "workbook template v2".getBytes( "UTF-8" );
+
+    final byte[] first = registry.getTemplateData( new ByteArrayInputStream( template ) );
+    final byte[] second = registry.getTemplateData( new ByteArrayInputStream( changed ) );
+    assertNotSame( first, second );
+    assertTrue( Arrays.equals( changed, second ) );
+    assertSame( first, registry.getTemplateData( new ByteArrayInputStream( template ) ) );
+  }
+
+  public void testOutputHandlersShareTemplateData() throws Exception {
+    final byte[] template = "workbook template".getBytes( "UTF-8" );
+    final XLSOutput xls = new XLSOutput();
+    xls.setTemplateDataFromStream( new ByteArrayInputStream( template ) );
+    final XLSXOutput xlsx = new XLSXOutput();
+    xlsx.setTemplateDataFromStream( new ByteArrayInputStream( template ) );
+    assertSame( xls.getTemplateData(), xlsx.getTemplateData() );
+  }
+}
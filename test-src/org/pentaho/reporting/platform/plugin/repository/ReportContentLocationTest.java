@@ -0,0 +1,126 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.reporting.platform.plugin.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.platform.repository2.unified.fs.FileSystemBackedUnifiedRepository;
+import org.pentaho.reporting.libraries.base.util.IOUtils;
+import org.pentaho.reporting.libraries.repository.ContentItem;
+import org.pentaho.reporting.platform.plugin.MicroPlatformFactory;
+import org.pentaho.test.platform.engine.core.MicroPlatform;
+
+public class ReportContentLocationTest extends TestCase {
+  private MicroPlatform microPlatform;
+  private File baseDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    baseDir = new File( "./resource/solution/system/tmp/content-location" );
+    deleteRecursively( baseDir );
+    new File( baseDir, "output" ).mkdirs();
+
+    microPlatform = MicroPlatformFactory.create();
+    microPlatform.defineInstance( IUnifiedRepository.class,
+        new FileSystemBackedUnifiedRepository( baseDir.getAbsolutePath() ) );
+    microPlatform.start();
+
+    PentahoSessionHolder.setSession( new StandaloneSession() );
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    microPlatform.stop();
+    deleteRecursively( baseDir );
+  }
+
+  private static void deleteRecursively( final File file ) {
+    final File[] children = file.listFiles();
+    if ( children != null ) {
+      for ( final File child : children ) {
+        deleteRecursively( child );
+      }
+    }
+    file.delete();
+  }
+
+  private static ReportContentLocation createLocation() throws Exception {
+    final RepositoryFile folder = PentahoSystem.get( IUnifiedRepository.class ).getFile( "/output" );
+    assertNotNull( folder );
+    return (ReportContentLocation) new ReportContentRepository( folder ).getRoot();
+  }
+
+  private static void write( final ContentItem item, final String content ) throws Exception {
+    final OutputStream out = item.getOutputStream();
+    out.write( content.getBytes( "UTF-8" ) );
+    out.close();
+  }
+
+  public void testFileIsCreatedWhenContentIsWritten() throws Exception {
+    final ReportContentLocation location = createLocation();
+    final ContentItem item = location.createItem( "data.css" );
+    assertTrue( location.exists( "data.css" ) );
+    assertNull( PentahoSystem.get( IUnifiedRepository.class ).getFile( "/output/data.css" ) );
+
+    write( item, "body {}" );
+    assertNotNull( PentahoSystem.get( IUnifiedRepository.class ).getFile( "/output/data.css" ) );
+    assertTrue( location.exists( "data.css" ) );
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    IOUtils.getInstance().copyStreams( item.getInputStream(), content );
+    assertEquals( "body {}", content.toString( "UTF-8" ) );
+  }
+
+  public void testPendingNamesAreVisibleToOtherLocations() throws Exception {
+    final ReportContentLocation first = createLocation();
+    final ReportContentLocation second = createLocation();
+    assertFalse( second.exists( "image.png" ) );
+
+    final ContentItem item = first.createItem( "image.png" );
+    assertTrue( second.exists( "image.png" ) );
+
+    write( item, "png" );
+    assertTrue( second.exists( "image.png" ) );
+  }
+
+  public void testFilesOfOtherRunsAreSeenAfterTheFirstLookup() throws Exception {
+    final ReportContentLocation first = createLocation();
+    final ReportContentLocation second = createLocation();
+    assertFalse( second.exists( "other.png" ) );
+    assertFalse( second.exists( "report.css" ) );
+
+    write( first.createItem( "other.png" ), "png" );
+    assertTrue( second.exists( "other.png" ) );
+    assertFalse( second.exists( "report.css" ) );
+  }
+
+  public void testAbandonedNameIsReleased() throws Exception {
+    final ReportContentLocation location = createLocation();
+    location.createItem( "failed.png" );
+    assertTrue( location.exists( "failed.png" ) );
+    location.finishPending( "failed.png", false );
+    assertFalse( createLocation().exists( "failed.png" ) );
+  }
+}